@@ -0,0 +1,23 @@
+package ekon.simcity;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all benchmarks with the GC profiler, which adds the allocation rate (gc.alloc.rate.norm,
+ * bytes allocated per operation) next to the time of every benchmark.
+ *
+ * Takes an optional regular expression selecting the benchmarks to run.
+ */
+public class BenchmarkRunner {
+  public static void main(String[] args) throws RunnerException {
+	Options options = new OptionsBuilder()
+		.include(args.length > 0 ? args[0] : "ekon\\.simcity\\..*Benchmark")
+		.addProfiler(GCProfiler.class)
+		.build();
+	new Runner(options).run();
+  }
+}
@@ -0,0 +1,84 @@
+package ekon.simcity.algorithms;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableList;
+
+import ekon.simcity.city.Factory;
+import ekon.simcity.city.FactoryType;
+import ekon.simcity.city.Item;
+import ekon.simcity.city.ManufacturingFacility;
+import ekon.simcity.city.ProductionRunner;
+import ekon.simcity.city.Store;
+
+/**
+ * Cost of {@link ManufacturingOptimizer#optimizeToSellMostExpensiveItems} for different sets of
+ * unlocked items. The optimizer fills the slots of the production runner, so every invocation
+ * gets a fresh one with a small factory and a store for every facility type that's needed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ManufacturingOptimizerBenchmark {
+  private static final int STORE_CAPACITY = 2;
+
+  public enum UnlockedItems {
+	BASIC_FACTORY(Item.METAL, Item.WOOD),
+	ALL_FACTORY(Item.METAL, Item.WOOD, Item.PLASTIC, Item.SEEDS, Item.MINERALS, Item.CHEMICALS, Item.TEXTILES,
+		Item.SUGAR_AND_SPICES, Item.GLASS, Item.ANIMAL_FEED),
+	BUILDING_SUPPLIES(Item.METAL, Item.WOOD, Item.MINERALS, Item.NAILS, Item.PLANKS, Item.BRIKS),
+	HARDWARE(Item.METAL, Item.WOOD, Item.PLASTIC, Item.HAMMER, Item.MEASURING_TAPE, Item.SHOVEL),
+	ALL(Item.values());
+
+	private final ImmutableList<Item> items;
+
+	private UnlockedItems(Item... items) {
+	  this.items = ImmutableList.copyOf(items);
+	}
+  }
+
+  @Param
+  private UnlockedItems unlockedItems;
+
+  private ProductionRunner prodRunner;
+
+  @Setup(Level.Invocation)
+  public void setUp() {
+	prodRunner = new ProductionRunner();
+	Set<ManufacturingFacility.Type> facilityTypes = EnumSet.noneOf(ManufacturingFacility.Type.class);
+	for (Item item : unlockedItems.items) {
+	  facilityTypes.add(item.getManufacturingFacilityType());
+	}
+	for (ManufacturingFacility.Type type : facilityTypes) {
+	  prodRunner.addFacility(type == ManufacturingFacility.Type.FACTORY
+		  ? new Factory(FactoryType.SMALL_FACTORY) : new Store(type, STORE_CAPACITY));
+	}
+	for (Item item : unlockedItems.items) {
+	  prodRunner.unlockItem(item);
+	}
+  }
+
+  @Benchmark
+  public ProductionRunner optimizeToSellMostExpensiveItems() {
+	new ManufacturingOptimizer().optimizeToSellMostExpensiveItems(false /* useExistingItems */, prodRunner);
+	return prodRunner;
+  }
+}
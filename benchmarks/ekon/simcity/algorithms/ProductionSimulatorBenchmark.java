@@ -0,0 +1,114 @@
+package ekon.simcity.algorithms;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ekon.simcity.city.ProductionRunner;
+import ekon.simcity.city.ProductionSimulator;
+import ekon.simcity.city.ProductionStrategy;
+import ekon.simcity.workload.EconomyGenerator;
+
+/**
+ * Cost of simulating a day of production with the {@link ManufacturingOptimizer} strategies, for
+ * a generated economy. Every invocation gets a fresh production runner, since the simulation fills
+ * its slots. The revenue per hour of each strategy is in the returned simulator.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProductionSimulatorBenchmark {
+
+  public enum Strategy {
+	MOST_EXPENSIVE_FIRST {
+	  @Override
+	  ProductionStrategy create(ManufacturingOptimizer optimizer) {
+		return new MostExpensiveFirstStrategy(optimizer);
+	  }
+	},
+	MOST_REVENUE {
+	  @Override
+	  ProductionStrategy create(ManufacturingOptimizer optimizer) {
+		return new MostRevenueStrategy(optimizer, 0);
+	  }
+	},
+	MOST_REVENUE_WITHIN_HOUR {
+	  @Override
+	  ProductionStrategy create(ManufacturingOptimizer optimizer) {
+		return new MostRevenueStrategy(optimizer, 60);
+	  }
+	};
+
+	abstract ProductionStrategy create(ManufacturingOptimizer optimizer);
+  }
+
+  @Param
+  private Strategy strategy;
+
+  @Param({"0", "60"})
+  private int pickupIntervalMinutes;
+
+  @Param({"10", "30"})
+  private int numUnlockedItems;
+
+  private ProductionRunner prodRunner;
+
+  @Setup(Level.Invocation)
+  public void setUp() {
+	prodRunner = new EconomyGenerator(42).generate(numUnlockedItems, 2, 5, 0.5);
+  }
+
+  @Benchmark
+  public ProductionSimulator simulateDay() {
+	ProductionSimulator simulator =
+		new ProductionSimulator(prodRunner, strategy.create(new ManufacturingOptimizer()), pickupIntervalMinutes);
+	simulator.run(ProductionSimulator.MINUTES_PER_DAY);
+	return simulator;
+  }
+
+  private static class MostExpensiveFirstStrategy implements ProductionStrategy {
+	private final ManufacturingOptimizer optimizer;
+
+	MostExpensiveFirstStrategy(ManufacturingOptimizer optimizer) {
+	  this.optimizer = optimizer;
+	}
+
+	@Override
+	public void fillFreeSlots(ProductionRunner productionRunner) {
+	  optimizer.optimizeToSellMostExpensiveItems(false /* useExistingItems */, productionRunner);
+	}
+  }
+
+  private static class MostRevenueStrategy implements ProductionStrategy {
+	private final ManufacturingOptimizer optimizer;
+	private final int horizonMinutes; // 0 for no limit
+
+	MostRevenueStrategy(ManufacturingOptimizer optimizer, int horizonMinutes) {
+	  this.optimizer = optimizer;
+	  this.horizonMinutes = horizonMinutes;
+	}
+
+	@Override
+	public void fillFreeSlots(ProductionRunner productionRunner) {
+	  if (horizonMinutes > 0) {
+		optimizer.optimizeForSelling(productionRunner, horizonMinutes);
+	  } else {
+		optimizer.optimizeForSelling(productionRunner);
+	  }
+	}
+  }
+}
@@ -0,0 +1,155 @@
+package ekon.simcity.city;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ekon.simcity.workload.CityGenerator;
+
+/**
+ * Costs of changing a city and of verifying its constraints, on cities of increasing size.
+ *
+ * Cities are filled the same way every time: rows of road every third row joined by a road down
+ * the first column, with the rows in between filled with houses and a fire and police station
+ * every few houses. Changes are undone within the benchmark, so the city is the same for every
+ * invocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CityBenchmark {
+  // One fire and police station every this many houses in a row.
+  private static final int HOUSES_PER_SERVICE = 2;
+
+  @Param({"12", "24", "48", "96"})
+  private int size;
+
+  private City city;
+  private GridElement house;
+  private GridElement road;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+	city = createCity(size);
+	house = city.getElement(ElementType.HOUSE, city.getNumElements(ElementType.HOUSE) / 2);
+	// A road in the middle of a row, so removing it splits the road network.
+	road = city.getElementAt(city.getPosition(3 * (size / 6), size / 2));
+  }
+
+  static City createCity(int size) {
+	Position entrance = Position.of(0, 0);
+	City city = new City(Position.of(size, size), entrance);
+	for (int x = 0; x < size; x++) {
+	  city.add(ElementFactory.getElement(ElementType.ROAD, city.getPosition(x, 0)));
+	}
+	for (int x = 0; x < size; x += 3) {
+	  for (int y = 1; y < size; y++) {
+		city.add(ElementFactory.getElement(ElementType.ROAD, city.getPosition(x, y)));
+	  }
+	}
+	for (int x = 1; x + 1 < size; x += 3) {
+	  int numHouses = 0;
+	  for (int y = 1; y + 1 < size; y += 2) {
+		if (numHouses++ % (HOUSES_PER_SERVICE + 1) == 0) {
+		  city.add(ElementFactory.getElement(ElementType.FIRE_STATION, city.getPosition(x, y)));
+		  city.add(ElementFactory.getElement(ElementType.POLICE_STATION, city.getPosition(x, y + 1)));
+		} else {
+		  city.add(ElementFactory.getElement(ElementType.HOUSE, city.getPosition(x, y)));
+		}
+	  }
+	}
+	return city;
+  }
+
+  @Benchmark
+  public City removeAndAddHouse() {
+	city.remove(house);
+	city.add(house);
+	return city;
+  }
+
+  @Benchmark
+  public City removeAndAddRoad() {
+	city.remove(road);
+	city.add(road);
+	return city;
+  }
+
+  @Benchmark
+  public City undoToMark() {
+	int mark = city.mark();
+	city.remove(house);
+	city.undoTo(mark);
+	city.clearTrail();
+	return city;
+  }
+
+  // Constant time, since the constraint status is kept up to date on every change.
+  @Benchmark
+  public boolean areRequirementsSatisfied() {
+	return city.areRequirementsSatisfied();
+  }
+
+  @Benchmark
+  public int countViolationsFromScratch() {
+	return city.countViolationsFromScratch();
+  }
+
+  /** Cost of checking a single constraint of every element from scratch. */
+  @State(Scope.Thread)
+  public static class ConstraintState {
+	@Param({"NEAR_ROAD", "COVERED_BY_REQUIRED_SERVICE", "DOES_NOT_OVERLAP", "CONNECTED_TO_ENTRANCE"})
+	private ElementConstraint constraint;
+
+	@Param({"12", "48"})
+	private int constraintCitySize;
+
+	private City city;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+	  city = createCity(constraintCitySize);
+	}
+  }
+
+  @Benchmark
+  public int countConstraintViolations(ConstraintState state) {
+	return state.city.countViolationsFromScratch(state.constraint);
+  }
+
+  /** Cities from the workload generator, with irregular blocks and a mix of elements. */
+  @State(Scope.Thread)
+  public static class GeneratedCityState {
+	@Param({"32", "64", "128"})
+	private int generatedCitySize;
+
+	@Param({"0.5", "0.9"})
+	private double density;
+
+	private City city;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+	  city = new CityGenerator(42).generate(Position.of(generatedCitySize, generatedCitySize), density);
+	}
+  }
+
+  @Benchmark
+  public int countViolationsOfGeneratedCity(GeneratedCityState state) {
+	return state.city.countViolationsFromScratch();
+  }
+}
@@ -0,0 +1,125 @@
+package ekon.simcity.algorithms;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.MoreObjects;
+
+import ekon.simcity.city.City;
+import ekon.simcity.city.ElementFactory;
+import ekon.simcity.city.ElementType;
+import ekon.simcity.city.GridElement;
+import ekon.simcity.city.Position;
+
+/**
+ * A layout stored as one int per element instead of a live {@link City}, so that many layouts can
+ * be kept around cheaply.
+ *
+ * Each element is encoded as its type's ordinal in the top byte and its anchor's cell index
+ * (x * numColumns + y) in the lower three bytes. Elements are sorted, so two encodings of the same
+ * layout are equal. Elements are rebuilt with the spec that {@link ElementFactory} has for their
+ * type. The city's entrance, if any, is kept as a cell index too.
+ */
+class EncodedLayout {
+  private static final int CELL_BITS = 24;
+  private static final int CELL_MASK = (1 << CELL_BITS) - 1;
+  static final int NO_ENTRANCE = -1;
+
+  private final int numRows, numColumns;
+  private final int entranceCell; // NO_ENTRANCE if the city has none.
+  private final int[] elements;
+  private final long score;
+
+  EncodedLayout(int numRows, int numColumns, int entranceCell, int[] elements, long score) {
+	this.numRows = numRows;
+	this.numColumns = numColumns;
+	this.entranceCell = entranceCell;
+	this.elements = elements;
+	this.score = score;
+  }
+
+  static EncodedLayout of(City city, long score) {
+	Position cityLimits = city.getCityLimits();
+	if (cityLimits.getX() * cityLimits.getY() > CELL_MASK + 1) {
+	  throw new IllegalArgumentException("City limits " + cityLimits + " are too large to encode");
+	}
+	List<GridElement> cityElements = city.getElements();
+	int[] elements = new int[cityElements.size()];
+	for (int i = 0; i < elements.length; i++) {
+	  GridElement element = cityElements.get(i);
+	  Position position = element.getPosition();
+	  elements[i] = element.getSpec().getType().ordinal() << CELL_BITS
+		  | (position.getX() * cityLimits.getY() + position.getY());
+	}
+	Arrays.sort(elements);
+	Position entrance = city.getEntrance();
+	int entranceCell = entrance == null ? NO_ENTRANCE : entrance.getX() * cityLimits.getY() + entrance.getY();
+	return new EncodedLayout(cityLimits.getX(), cityLimits.getY(), entranceCell, elements, score);
+  }
+
+  // Returns the layout with the given element added, with the same score.
+  EncodedLayout with(GridElement element) {
+	Position position = element.getPosition();
+	int encoded = element.getSpec().getType().ordinal() << CELL_BITS | (position.getX() * numColumns + position.getY());
+	int index = Arrays.binarySearch(elements, encoded);
+	if (index >= 0) throw new IllegalArgumentException(element + " is already in the layout");
+	index = -index - 1;
+	int[] newElements = new int[elements.length + 1];
+	System.arraycopy(elements, 0, newElements, 0, index);
+	newElements[index] = encoded;
+	System.arraycopy(elements, index, newElements, index + 1, elements.length - index);
+	return new EncodedLayout(numRows, numColumns, entranceCell, newElements, score);
+  }
+
+  City toCity() {
+	Position entrance = entranceCell == NO_ENTRANCE ? null : Position.of(entranceCell / numColumns, entranceCell % numColumns);
+	City city = new City(Position.of(numRows, numColumns), entrance);
+	ElementType[] types = ElementType.values();
+	for (int element : elements) {
+	  int cell = element & CELL_MASK;
+	  city.add(ElementFactory.getElement(types[element >>> CELL_BITS], city.getPosition(cell / numColumns, cell % numColumns)));
+	}
+	return city;
+  }
+
+  int getNumRows() {
+	return numRows;
+  }
+
+  int getNumColumns() {
+	return numColumns;
+  }
+
+  // Returns the cell index of the entrance, or NO_ENTRANCE.
+  int getEntranceCell() {
+	return entranceCell;
+  }
+
+  int getNumElements() {
+	return elements.length;
+  }
+
+  // Returns the encoded element at the given index, see the class comment.
+  int getElement(int index) {
+	return elements[index];
+  }
+
+  long getScore() {
+	return score;
+  }
+
+  // True if both are the same layout, regardless of score.
+  boolean isSameLayout(EncodedLayout other) {
+	return numRows == other.numRows && numColumns == other.numColumns && entranceCell == other.entranceCell
+		&& Arrays.equals(elements, other.elements);
+  }
+
+  @Override
+  public String toString() {
+	return MoreObjects.toStringHelper(this)
+		.add("score", score)
+		.add("numElements", elements.length)
+		.add("city", toCity())
+		.toString();
+  }
+}
@@ -0,0 +1,68 @@
+package ekon.simcity.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * Counts indexed by ordinal, e.g. items in production by {@link ekon.simcity.city.Item} ordinal or
+ * free slots by {@link ekon.simcity.city.ManufacturingFacility.Type} ordinal.
+ *
+ * Counts are kept in an int array, so updates don't box or allocate. Tentative changes are undone
+ * by taking a snapshot before making them and restoring it if they have to be rolled back, which
+ * is a single array copy.
+ *
+ * Note: not thread-safe.
+ */
+class Inventory {
+  private final int[] counts;
+  private final int[] snapshot;
+
+  Inventory(int size) {
+	this.counts = new int[size];
+	this.snapshot = new int[size];
+  }
+
+  int get(int index) {
+	return counts[index];
+  }
+
+  void add(int index, int amount) {
+	counts[index] += amount;
+  }
+
+  /** Takes up to the given amount and returns how much was taken. */
+  int take(int index, int amount) {
+	int taken = Math.min(amount, counts[index]);
+	counts[index] -= taken;
+	return taken;
+  }
+
+  /** Takes the given amount if there's that much, otherwise takes nothing and returns false. */
+  boolean tryTake(int index, int amount) {
+	if (counts[index] < amount) return false;
+	counts[index] -= amount;
+	return true;
+  }
+
+  /** True if some count is positive. */
+  boolean hasAny() {
+	for (int count : counts) {
+	  if (count > 0) return true;
+	}
+	return false;
+  }
+
+  /** Remembers the current counts, replacing the previous snapshot. */
+  void snapshot() {
+	System.arraycopy(counts, 0, snapshot, 0, counts.length);
+  }
+
+  /** Rolls the counts back to the last snapshot. */
+  void restore() {
+	System.arraycopy(snapshot, 0, counts, 0, counts.length);
+  }
+
+  @Override
+  public String toString() {
+	return Arrays.toString(counts);
+  }
+}
@@ -0,0 +1,32 @@
+package ekon.simcity.algorithms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class InventoryTest {
+
+  /** Verify that restoring a snapshot rolls back everything taken and added since. */
+  @Test
+  public void testRestore() {
+	Inventory inventory = new Inventory(3);
+	inventory.add(0, 2);
+	inventory.add(2, 1);
+	inventory.snapshot();
+
+	assertEquals(2, inventory.take(0, 5));
+	assertTrue(inventory.tryTake(2, 1));
+	assertFalse(inventory.tryTake(2, 1));
+	inventory.add(1, 4);
+	assertEquals(0, inventory.get(0));
+	assertEquals(4, inventory.get(1));
+
+	inventory.restore();
+	assertEquals(2, inventory.get(0));
+	assertEquals(0, inventory.get(1));
+	assertEquals(1, inventory.get(2));
+	assertTrue(inventory.hasAny());
+  }
+}
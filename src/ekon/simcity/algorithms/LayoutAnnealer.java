@@ -0,0 +1,568 @@
+package ekon.simcity.algorithms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.base.MoreObjects;
+
+import ekon.simcity.city.City;
+import ekon.simcity.city.ElementFactory;
+import ekon.simcity.city.ElementSpec;
+import ekon.simcity.city.ElementType;
+import ekon.simcity.city.GridElement;
+import ekon.simcity.city.Position;
+
+/**
+ * Simulated annealing over city layouts, for cities too large for {@link LayoutSearch} to finish.
+ *
+ * Each chain starts from the starting city and repeatedly tries a random move: move a house, swap
+ * or move a required service, reroute a road segment, extend a road, or add or remove a house. A
+ * road segment is the run of road cells between two junctions, or between a junction and a dead
+ * end, and it's rerouted by connecting its ends again through other free cells. Moves are
+ * applied in place and reverted with {@link City#undoTo} when they're rejected. A move that
+ * doesn't lower the energy is always accepted, one that does is accepted with probability
+ * exp(delta / temperature), and the temperature is lowered geometrically over the time budget, or
+ * over the move budget if that runs out first.
+ *
+ * The energy is the city's score (see {@link City#getScore}) minus a large penalty for every
+ * violated constraint and missing required service, so chains can pass through invalid layouts
+ * but end up in valid ones. Only valid layouts are kept as results, in a {@link TopLayouts}
+ * scored by the city's score, so the best layout so far can be read at any time.
+ *
+ * Chains run independently on their own threads. Every exchange interval, a chain that is worse
+ * than the best chain so far continues from a copy of the best chain's state instead.
+ *
+ * Elements of the starting city are never moved or removed. Moves pick uniformly among the other
+ * elements of a type.
+ */
+class LayoutAnnealer {
+  private static final ElementSpec HOUSE_SPEC = ElementFactory.getSpec(ElementType.HOUSE);
+  private static final ElementSpec ROAD_SPEC = ElementFactory.getSpec(ElementType.ROAD);
+  // Energy lost for each violated constraint or missing required service. More than a house is worth.
+  private static final long PENALTY = 1000;
+  private static final double START_TEMPERATURE = 20;
+  private static final double END_TEMPERATURE = 0.5;
+  // Moves tried between checks of the clock, at most.
+  private static final int MOVES_PER_BATCH = 256;
+  // Random positions tried when moving an element anywhere in the city.
+  private static final int MAX_PLACEMENT_ATTEMPTS = 8;
+  // Offsets of the cells next to a cell, in rows and columns.
+  private static final int[] NEIGHBOR_ROWS = {-1, 1, 0, 0};
+  private static final int[] NEIGHBOR_COLUMNS = {0, 0, -1, 1};
+
+  private final City startingCity;
+  private final List<ElementSpec> requiredElements;
+  private final AnnealingOptions options;
+  private final TopLayouts topLayouts;
+  private final int numRows, numColumns;
+  // Number of elements of each type in the starting city, which must stay where they are.
+  private final int[] numFixedElements = new int[ElementType.values().length];
+
+  private final LongAdder movesTried = new LongAdder();
+  private final LongAdder movesAccepted = new LongAdder();
+  private City bestChainCity; // guarded by this
+  private long bestChainEnergy = Long.MIN_VALUE; // guarded by this
+  private long startTime, deadline;
+
+  LayoutAnnealer(City startingCity, List<ElementSpec> requiredElements, AnnealingOptions options) {
+	this(startingCity, requiredElements, options, new TopLayouts(1, new LayoutSink.Discard()));
+  }
+
+  LayoutAnnealer(City startingCity, List<ElementSpec> requiredElements, AnnealingOptions options,
+	  TopLayouts topLayouts) {
+	this.startingCity = startingCity;
+	this.requiredElements = requiredElements;
+	this.options = options;
+	this.topLayouts = topLayouts;
+	this.numRows = startingCity.getCityLimits().getX();
+	this.numColumns = startingCity.getCityLimits().getY();
+	for (ElementType type : ElementType.values()) {
+	  numFixedElements[type.ordinal()] = startingCity.getNumElements(type);
+	}
+  }
+
+  /** Runs all chains until the time or move budget is used up and returns the best valid layout, or null if none was found. */
+  City run() {
+	startTime = System.nanoTime();
+	deadline = startTime + TimeUnit.MILLISECONDS.toNanos(options.getTimeBudgetMillis());
+	ExecutorService executor = Executors.newFixedThreadPool(options.getNumChains());
+	try {
+	  List<Future<?>> chains = new ArrayList<>();
+	  for (int i = 0; i < options.getNumChains(); i++) {
+		chains.add(executor.submit(new Chain(LayoutSearch.mix(options.getSeed() + i))));
+	  }
+	  for (Future<?> chain : chains) {
+		chain.get();
+	  }
+	} catch (InterruptedException e) {
+	  Thread.currentThread().interrupt();
+	} catch (ExecutionException e) {
+	  throw new IllegalStateException("Annealing chain failed", e.getCause());
+	} finally {
+	  executor.shutdownNow();
+	}
+	return getBestCity();
+  }
+
+  /** Returns the best valid layout found so far, or null if none was found yet. Can be called while running. */
+  City getBestCity() {
+	EncodedLayout best = topLayouts.getBest();
+	return best == null ? null : best.toCity();
+  }
+
+  long getNumMovesTried() {
+	return movesTried.sum();
+  }
+
+  long getNumMovesAccepted() {
+	return movesAccepted.sum();
+  }
+
+  private long getEnergy(City city) {
+	int numMissing = 0;
+	for (ElementSpec spec : requiredElements) {
+	  if (city.getNumElements(spec.getType()) == 0) numMissing++;
+	}
+	return city.getScore() - PENALTY * (city.getNumViolations() + numMissing);
+  }
+
+  private boolean isValid(City city) {
+	for (ElementSpec spec : requiredElements) {
+	  if (city.getNumElements(spec.getType()) == 0) return false;
+	}
+	return city.areRequirementsSatisfied();
+  }
+
+  // Exchanges states between chains: records the given chain state if it's the best one so far,
+  // and otherwise returns a copy of the best one for the chain to continue from.
+  private synchronized City exchange(City city, long energy) {
+	if (energy >= bestChainEnergy) {
+	  bestChainEnergy = energy;
+	  bestChainCity = city.copy();
+	  return city;
+	}
+	return bestChainCity.copy();
+  }
+
+  private class Chain implements Runnable {
+	private final SplittableRandom random;
+	private City city;
+	// Scratch space reused by every move, indexed by cell (x * numColumns + y) where it's per cell.
+	private final int[] placementCells = new int[numRows * numColumns];
+	private final int[] segmentCells = new int[numRows * numColumns];
+	private final int[] queue = new int[numRows * numColumns];
+	private final int[] previousCells = new int[numRows * numColumns];
+	private final int[] pathLengths = new int[numRows * numColumns];
+	private final int[] segmentEnds = new int[NEIGHBOR_ROWS.length];
+	// A cell is visited by the current walk if its entry is visitStamp, and reached by the last
+	// walk along the roads if its entry is reachStamp, so nothing needs clearing.
+	private final int[] visited = new int[numRows * numColumns];
+	private int visitStamp;
+	private final int[] reached = new int[numRows * numColumns];
+	private int reachStamp;
+
+	Chain(long seed) {
+	  this.random = new SplittableRandom(seed);
+	}
+
+	@Override
+	public void run() {
+	  city = startingCity.copy();
+	  long energy = getEnergy(city);
+	  long bestValidScore = Long.MIN_VALUE;
+	  long nextExchange = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getExchangeIntervalMillis());
+	  long moveBudget = options.getMoveBudget();
+	  long numMoves = 0; // including the ones that couldn't be applied
+
+	  long now;
+	  while ((now = System.nanoTime()) < deadline && numMoves < moveBudget && !Thread.currentThread().isInterrupted()) {
+		double progress = Math.max((double) (now - startTime) / (deadline - startTime), (double) numMoves / moveBudget);
+		double temperature = START_TEMPERATURE * Math.pow(END_TEMPERATURE / START_TEMPERATURE, progress);
+
+		for (int i = 0; i < MOVES_PER_BATCH && numMoves < moveBudget; i++, numMoves++) {
+		  int mark = city.mark();
+		  if (!tryRandomMove()) {
+			city.undoTo(mark);
+			continue;
+		  }
+		  movesTried.increment();
+		  long newEnergy = getEnergy(city);
+		  long delta = newEnergy - energy;
+		  if (delta < 0 && random.nextDouble() >= Math.exp(delta / temperature)) {
+			city.undoTo(mark);
+			continue;
+		  }
+		  city.clearTrail();
+		  movesAccepted.increment();
+		  energy = newEnergy;
+		  if (city.getScore() > bestValidScore && isValid(city)) {
+			bestValidScore = city.getScore();
+			topLayouts.offer(city, bestValidScore);
+		  }
+		}
+
+		if (now >= nextExchange) {
+		  City exchanged = exchange(city, energy);
+		  if (exchanged != city) {
+			city = exchanged;
+			energy = getEnergy(city);
+		  }
+		  nextExchange = now + TimeUnit.MILLISECONDS.toNanos(options.getExchangeIntervalMillis());
+		}
+	  }
+	}
+
+	// Applies a random move to the city. Returns false if the move couldn't be completed, in which
+	// case the caller undoes whatever part of it was applied.
+	private boolean tryRandomMove() {
+	  switch (random.nextInt(6)) {
+		case 0:
+		  return moveHouse();
+		case 1:
+		  return swapService();
+		case 2:
+		  return rerouteRoad();
+		case 3:
+		  return placeRandomly(ROAD_SPEC);
+		case 4:
+		  return placeRandomly(HOUSE_SPEC);
+		default:
+		  return removeRandom(ElementType.HOUSE);
+	  }
+	}
+
+	private boolean moveHouse() {
+	  GridElement house = pickMovable(ElementType.HOUSE);
+	  if (house == null) return false;
+	  city.remove(house);
+	  return placeRandomly(HOUSE_SPEC);
+	}
+
+	// Swaps two required services of the same size, or moves one anywhere in the city. Services
+	// aren't only moved next to roads, so that they can get out of the way of a road that they
+	// block in. Places a missing required service if there is one.
+	private boolean swapService() {
+	  ElementSpec spec = requiredElements.get(random.nextInt(requiredElements.size()));
+	  if (city.getNumElements(spec.getType()) == 0) return placeRandomly(spec);
+	  GridElement service = pickMovable(spec.getType());
+	  if (service == null) return false;
+
+	  ElementSpec otherSpec = requiredElements.get(random.nextInt(requiredElements.size()));
+	  GridElement other = otherSpec.getType() == spec.getType() ? null : pickMovable(otherSpec.getType());
+	  if (other != null && otherSpec.getWidth() == spec.getWidth() && otherSpec.getHeight() == spec.getHeight()) {
+		city.remove(service);
+		city.remove(other);
+		city.add(ElementFactory.getElement(spec.getType(), other.getPosition()));
+		city.add(ElementFactory.getElement(otherSpec.getType(), service.getPosition()));
+		return true;
+	  }
+
+	  city.remove(service);
+	  return placeAnywhere(spec);
+	}
+
+	// Removes the road segment through a random road cell and lays new road wherever that cut the
+	// network apart. A segment is the run of road cells without junctions that the cell is in, or
+	// just the cell if it's a junction itself, and its ends are the roads next to it. Every end
+	// that's no longer connected to the first one is connected to it again by the shortest path of
+	// free cells that avoids the picked cell, so the road takes a different route. A segment with a
+	// single end is a dead end, which is replaced by a random road of the same length from that
+	// end, and one with no ends isn't connected to anything, so it's just removed.
+	private boolean rerouteRoad() {
+	  GridElement road = pickMovable(ElementType.ROAD);
+	  if (road == null) return false;
+	  int start = getCell(road);
+	  boolean isJunction = countRoadNeighbors(start) > 2;
+
+	  // Follow the road away from the start in every direction, up to a junction, a road of the
+	  // starting city, or a dead end.
+	  visitStamp++;
+	  visited[start] = visitStamp;
+	  segmentCells[0] = start;
+	  int numSegmentCells = 1;
+	  int numEnds = 0;
+	  for (int direction = 0; direction < NEIGHBOR_ROWS.length; direction++) {
+		int cell = getNeighbor(start, direction);
+		if (cell < 0 || !isRoad(cell)) continue;
+		int previous = start;
+		while (!isJunction && cell >= 0 && visited[cell] != visitStamp && isMovableSegmentCell(cell)) {
+		  visited[cell] = visitStamp;
+		  segmentCells[numSegmentCells++] = cell;
+		  int next = getNextAlongRoad(cell, previous);
+		  previous = cell;
+		  cell = next;
+		}
+		if (cell >= 0 && visited[cell] != visitStamp) {
+		  visited[cell] = visitStamp;
+		  segmentEnds[numEnds++] = cell;
+		}
+	  }
+
+	  for (int i = 0; i < numSegmentCells; i++) {
+		int cell = segmentCells[i];
+		city.remove(city.getElementAt(city.getPosition(cell / numColumns, cell % numColumns)));
+	  }
+	  if (numEnds == 0) return true;
+	  if (numEnds == 1) return extend(segmentEnds[0], start, numSegmentCells);
+	  for (int i = 1; i < numEnds; i++) {
+		markReachableRoads(segmentEnds[0]);
+		if (reached[segmentEnds[i]] != reachStamp && !connect(segmentEnds[i], start, 2 * numSegmentCells + 2)) {
+		  return false;
+		}
+	  }
+	  return true;
+	}
+
+	// Marks the road cells connected to the given road cell as reached.
+	private void markReachableRoads(int from) {
+	  reachStamp++;
+	  reached[from] = reachStamp;
+	  queue[0] = from;
+	  int head = 0, tail = 1;
+	  while (head < tail) {
+		int cell = queue[head++];
+		for (int direction = 0; direction < NEIGHBOR_ROWS.length; direction++) {
+		  int neighbor = getNeighbor(cell, direction);
+		  if (neighbor >= 0 && reached[neighbor] != reachStamp && isRoad(neighbor)) {
+			reached[neighbor] = reachStamp;
+			queue[tail++] = neighbor;
+		  }
+		}
+	  }
+	}
+
+	// Lays road on the shortest path of free cells from the given road cell to a reached road cell,
+	// avoiding the blocked cell and at most maxLength cells long. Returns false if there's no such
+	// path.
+	private boolean connect(int from, int blockedCell, int maxLength) {
+	  visitStamp++;
+	  visited[blockedCell] = visitStamp;
+	  // Neighbors are visited from a random direction on, so ties between paths are broken randomly.
+	  int firstDirection = random.nextInt(NEIGHBOR_ROWS.length);
+	  int head = 0, tail = 0;
+	  for (int i = 0; i < NEIGHBOR_ROWS.length; i++) {
+		int neighbor = getNeighbor(from, (firstDirection + i) % NEIGHBOR_ROWS.length);
+		if (neighbor >= 0 && visited[neighbor] != visitStamp && isFree(neighbor)) {
+		  visited[neighbor] = visitStamp;
+		  previousCells[neighbor] = -1;
+		  pathLengths[neighbor] = 1;
+		  queue[tail++] = neighbor;
+		}
+	  }
+	  while (head < tail) {
+		int cell = queue[head++];
+		if (isNextToReachedRoad(cell)) {
+		  for (int pathCell = cell; pathCell >= 0; pathCell = previousCells[pathCell]) {
+			addRoad(pathCell);
+		  }
+		  return true;
+		}
+		if (pathLengths[cell] == maxLength) continue;
+		for (int i = 0; i < NEIGHBOR_ROWS.length; i++) {
+		  int neighbor = getNeighbor(cell, (firstDirection + i) % NEIGHBOR_ROWS.length);
+		  if (neighbor >= 0 && visited[neighbor] != visitStamp && isFree(neighbor)) {
+			visited[neighbor] = visitStamp;
+			previousCells[neighbor] = cell;
+			pathLengths[neighbor] = pathLengths[cell] + 1;
+			queue[tail++] = neighbor;
+		  }
+		}
+	  }
+	  return false;
+	}
+
+	private boolean isNextToReachedRoad(int cell) {
+	  for (int direction = 0; direction < NEIGHBOR_ROWS.length; direction++) {
+		int neighbor = getNeighbor(cell, direction);
+		if (neighbor >= 0 && reached[neighbor] == reachStamp) return true;
+	  }
+	  return false;
+	}
+
+	// Lays up to length road cells in a random walk from the given road cell, avoiding the blocked
+	// cell. Returns false if not even one could be laid.
+	private boolean extend(int from, int blockedCell, int length) {
+	  int cell = from;
+	  int numLaid = 0;
+	  while (numLaid < length) {
+		int firstDirection = random.nextInt(NEIGHBOR_ROWS.length);
+		int next = -1;
+		for (int i = 0; i < NEIGHBOR_ROWS.length && next < 0; i++) {
+		  int neighbor = getNeighbor(cell, (firstDirection + i) % NEIGHBOR_ROWS.length);
+		  if (neighbor >= 0 && neighbor != blockedCell && isFree(neighbor)) next = neighbor;
+		}
+		if (next < 0) break;
+		addRoad(next);
+		numLaid++;
+		cell = next;
+	  }
+	  return numLaid > 0;
+	}
+
+	private void addRoad(int cell) {
+	  city.add(ElementFactory.getElement(ElementType.ROAD, city.getPosition(cell / numColumns, cell % numColumns)));
+	}
+
+	// True if the road at the given cell can be part of a rerouted segment: it isn't part of the
+	// starting city and isn't a junction.
+	private boolean isMovableSegmentCell(int cell) {
+	  return countRoadNeighbors(cell) <= 2
+		  && !isFixed(city.getElementAt(city.getPosition(cell / numColumns, cell % numColumns)));
+	}
+
+	// Returns the road cell next to the given one that isn't the previous one, or -1 if there's none.
+	private int getNextAlongRoad(int cell, int previous) {
+	  for (int direction = 0; direction < NEIGHBOR_ROWS.length; direction++) {
+		int neighbor = getNeighbor(cell, direction);
+		if (neighbor >= 0 && neighbor != previous && isRoad(neighbor)) return neighbor;
+	  }
+	  return -1;
+	}
+
+	private int countRoadNeighbors(int cell) {
+	  int numRoads = 0;
+	  for (int direction = 0; direction < NEIGHBOR_ROWS.length; direction++) {
+		int neighbor = getNeighbor(cell, direction);
+		if (neighbor >= 0 && isRoad(neighbor)) numRoads++;
+	  }
+	  return numRoads;
+	}
+
+	private boolean isRoad(int cell) {
+	  GridElement element = city.getElementAt(city.getPosition(cell / numColumns, cell % numColumns));
+	  return element != null && element.getSpec().getType() == ElementType.ROAD;
+	}
+
+	private boolean isFree(int cell) {
+	  return city.getElementAt(city.getPosition(cell / numColumns, cell % numColumns)) == null;
+	}
+
+	private boolean removeRandom(ElementType type) {
+	  GridElement element = pickMovable(type);
+	  if (element == null) return false;
+	  city.remove(element);
+	  return true;
+	}
+
+	// Adds an element with the given spec at a random position next to a road.
+	private boolean placeRandomly(ElementSpec spec) {
+	  int numPlacements = city.findPlacementCells(spec, placementCells);
+	  if (numPlacements == 0) return false;
+	  int cell = placementCells[random.nextInt(numPlacements)];
+	  city.add(ElementFactory.getElement(spec.getType(), city.getPosition(cell / numColumns, cell % numColumns)));
+	  return true;
+	}
+
+	// Adds an element with the given spec at a random free position, next to a road or not.
+	private boolean placeAnywhere(ElementSpec spec) {
+	  Position cityLimits = city.getCityLimits();
+	  for (int i = 0; i < MAX_PLACEMENT_ATTEMPTS; i++) {
+		Position position = city.getPosition(
+			random.nextInt(cityLimits.getX() - spec.getHeight() + 1), random.nextInt(cityLimits.getY() - spec.getWidth() + 1));
+		if (city.canPlace(spec, position)) {
+		  city.add(ElementFactory.getElement(spec.getType(), position));
+		  return true;
+		}
+	  }
+	  return false;
+	}
+
+	// Returns a random element of the given type that isn't part of the starting city, or null if
+	// there are none. Every such element is equally likely, wherever it is in the city's list.
+	private GridElement pickMovable(ElementType type) {
+	  int numElements = city.getNumElements(type);
+	  if (numElements == numFixedElements[type.ordinal()]) return null;
+	  while (true) {
+		GridElement element = city.getElement(type, random.nextInt(numElements));
+		if (!isFixed(element)) return element;
+	  }
+	}
+
+	// True if the element is one of the starting city's, which are never removed, so any element
+	// equal to one of them is that element.
+	private boolean isFixed(GridElement element) {
+	  return element.equals(startingCity.getElementAt(element.getPosition()));
+	}
+
+	private int getCell(GridElement element) {
+	  return element.getPosition().getX() * numColumns + element.getPosition().getY();
+	}
+
+	// Returns the cell next to the given one in the given direction, or -1 if it's outside the city.
+	private int getNeighbor(int cell, int direction) {
+	  int x = cell / numColumns + NEIGHBOR_ROWS[direction];
+	  int y = cell % numColumns + NEIGHBOR_COLUMNS[direction];
+	  return x < 0 || y < 0 || x >= numRows || y >= numColumns ? -1 : x * numColumns + y;
+	}
+  }
+
+  /** How to run the annealer. */
+  static class AnnealingOptions {
+	private final int numChains;
+	private final long timeBudgetMillis;
+	private final long moveBudget;
+	private final long exchangeIntervalMillis;
+	private final long seed;
+
+	/**
+	 * @param numChains number of independent chains, each run on its own thread
+	 * @param timeBudgetMillis wall-clock time after which the best layout found is returned
+	 * @param exchangeIntervalMillis how often chains pick up the best state of all chains
+	 * @param seed seed for the first chain, the other chains' seeds are derived from it
+	 */
+	AnnealingOptions(int numChains, long timeBudgetMillis, long exchangeIntervalMillis, long seed) {
+	  this(numChains, timeBudgetMillis, Long.MAX_VALUE, exchangeIntervalMillis, seed);
+	}
+
+	/**
+	 * Same as above, but every chain also stops after trying moveBudget moves, so that the work
+	 * done doesn't depend on the speed of the machine.
+	 */
+	AnnealingOptions(int numChains, long timeBudgetMillis, long moveBudget, long exchangeIntervalMillis, long seed) {
+	  if (moveBudget < 1) throw new IllegalArgumentException("Move budget must be positive, was " + moveBudget);
+	  this.numChains = numChains;
+	  this.timeBudgetMillis = timeBudgetMillis;
+	  this.moveBudget = moveBudget;
+	  this.exchangeIntervalMillis = exchangeIntervalMillis;
+	  this.seed = seed;
+	}
+
+	int getNumChains() {
+	  return numChains;
+	}
+
+	long getTimeBudgetMillis() {
+	  return timeBudgetMillis;
+	}
+
+	long getMoveBudget() {
+	  return moveBudget;
+	}
+
+	long getExchangeIntervalMillis() {
+	  return exchangeIntervalMillis;
+	}
+
+	long getSeed() {
+	  return seed;
+	}
+
+	@Override
+	public String toString() {
+	  return MoreObjects.toStringHelper(this)
+		  .add("numChains", numChains)
+		  .add("timeBudgetMillis", timeBudgetMillis)
+		  .add("moveBudget", moveBudget)
+		  .add("exchangeIntervalMillis", exchangeIntervalMillis)
+		  .add("seed", seed)
+		  .toString();
+	}
+  }
+}
@@ -0,0 +1,50 @@
+package ekon.simcity.algorithms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ekon.simcity.city.City;
+import ekon.simcity.city.ElementFactory;
+import ekon.simcity.city.ElementSpec;
+import ekon.simcity.city.ElementType;
+import ekon.simcity.city.Position;
+
+public class LayoutAnnealerTest {
+
+  private static final List<ElementSpec> REQUIRED_ELEMENTS = Arrays.asList(
+	  ElementFactory.getServiceSpec(ElementType.FIRE_STATION),
+	  ElementFactory.getServiceSpec(ElementType.POLICE_STATION));
+
+  private City city;
+
+  @Before
+  public void setUp() {
+	city = new City(Position.of(8, 8));
+	city.add(ElementFactory.getElement(ElementType.ROAD, city.getPosition(0, 0)));
+  }
+
+  /** Verify that annealing returns a layout satisfying all requirements, with some houses. */
+  @Test
+  public void testRun_findsValidLayout() {
+	LayoutAnnealer annealer = new LayoutAnnealer(city, REQUIRED_ELEMENTS, new LayoutAnnealer.AnnealingOptions(
+		2, 60000 /* timeBudgetMillis */, 20000 /* moveBudget */, 100 /* exchangeIntervalMillis */, 7));
+	City best = annealer.run();
+
+	assertNotNull(best);
+	assertTrue(best.areRequirementsSatisfied());
+	assertEquals(1, best.getNumElements(ElementType.FIRE_STATION));
+	assertEquals(1, best.getNumElements(ElementType.POLICE_STATION));
+	assertTrue(best.getNumElements(ElementType.HOUSE) > 0);
+	assertEquals(ElementType.ROAD, best.getElementAt(best.getPosition(0, 0)).getSpec().getType()); // starting road kept
+	assertTrue(annealer.getNumMovesAccepted() <= annealer.getNumMovesTried());
+	assertTrue(annealer.getNumMovesTried() <= 2 * 20000);
+	assertEquals(1, city.getNumElements(ElementType.ROAD)); // starting city isn't modified
+  }
+}
@@ -1,5 +1,8 @@
 package ekon.simcity.algorithms;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
 
@@ -14,53 +17,104 @@ import ekon.simcity.city.Position;
  */
 class LayoutCalculator {
   // Assuming 2 roads on each side and 4ish buildings.
-  private static final Position BASIC_CITY_LIMITS = new Position(10, 10);
+  private static final Position BASIC_CITY_LIMITS = Position.of(10, 10);
+  private static final int NUM_TOP_LAYOUTS = 5;
+  private static final Position ENTRANCE = Position.of(0, 0);
 
   private static void addElements(City city) {
-	city.add(ElementFactory.getElement(ElementType.ROAD, new Position(0,0)));
-	city.add(ElementFactory.getElement(ElementType.ROAD, new Position(0,1)));
-	city.add(ElementFactory.getElement(ElementType.ROAD, new Position(0,2)));
-	city.add(ElementFactory.getElement(ElementType.ROAD, new Position(0,3)));
-	city.add(ElementFactory.getElement(ElementType.HOUSE, new Position(1, 0)));
-	city.add(ElementFactory.getElement(ElementType.FIRE_STATION, new Position(1, 2)));
-	city.add(ElementFactory.getElement(ElementType.POLICE_STATION, new Position(1, 3)));
+	city.add(ElementFactory.getElement(ElementType.ROAD, city.getPosition(0,0)));
+	city.add(ElementFactory.getElement(ElementType.ROAD, city.getPosition(0,1)));
+	city.add(ElementFactory.getElement(ElementType.ROAD, city.getPosition(0,2)));
+	city.add(ElementFactory.getElement(ElementType.ROAD, city.getPosition(0,3)));
+	city.add(ElementFactory.getElement(ElementType.HOUSE, city.getPosition(1, 0)));
+	city.add(ElementFactory.getElement(ElementType.FIRE_STATION, city.getPosition(1, 2)));
+	city.add(ElementFactory.getElement(ElementType.POLICE_STATION, city.getPosition(1, 3)));
 
 	// overlapping element
-//	city.add(ElementFactory.getElement(ElementType.ROAD, new Position(1,0)));
+//	city.add(ElementFactory.getElement(ElementType.ROAD, city.getPosition(1,0)));
 	
-	// unattached road.
-//	city.add(ElementFactory.getElement(ElementType.ROAD, new Position(3,1)));
+	// unattached road, not connected to the entrance.
+//	city.add(ElementFactory.getElement(ElementType.ROAD, city.getPosition(3,1)));
   }
 
   /**
    * Given a set of required services, and constraint on grid area, come up with possible layouts.
    * New houses and roads can be added.
+   *
+   * The given city is the starting point of the search and is not modified.
    */
-  private void calculateLayoutWithConstraints(City city) {
+  LayoutSearch.Result calculateLayoutWithConstraints(City city, LayoutSearch.SearchOptions options) {
+	return calculateLayoutWithConstraints(city, options, new TopLayouts(1, new LayoutSink.Discard()));
+  }
+
+  /**
+   * Same as above, but keeps the best layouts in the given top layouts, which also get to stream
+   * every improved layout to their sink as soon as it's found.
+   */
+  LayoutSearch.Result calculateLayoutWithConstraints(City city, LayoutSearch.SearchOptions options,
+	  TopLayouts topLayouts) {
+	return new LayoutSearch(city, getRequiredElements(), options, topLayouts).run();
+  }
+
+  /**
+   * Same as above, but checkpoints the search to the given file every checkpointIntervalMillis,
+   * and resumes it from there if the file already holds a checkpoint.
+   */
+  LayoutSearch.Result calculateLayoutWithConstraints(City city, LayoutSearch.SearchOptions options,
+	  TopLayouts topLayouts, Path checkpointFile, long checkpointIntervalMillis) throws IOException {
+	return new LayoutSearch(city, getRequiredElements(), options, topLayouts).run(checkpointFile, checkpointIntervalMillis);
+  }
+
+  /**
+   * Finds a good layout with simulated annealing, for cities that are too large for the exhaustive
+   * search to finish. Returns the best layout found within the time budget, or null if no layout
+   * satisfying all requirements was found. The top layouts are scored by City.getScore.
+   *
+   * The given city is the starting point of the search and is not modified.
+   */
+  City calculateLayoutWithAnnealing(City city, LayoutAnnealer.AnnealingOptions options, TopLayouts topLayouts) {
+	return new LayoutAnnealer(city, getRequiredElements(), options, topLayouts).run();
+  }
+
+  private static List<ElementSpec> getRequiredElements() {
 	// Want to have a small one of each of the required services.
-	List<ElementSpec> requiredElements = Arrays.asList(
+	return Arrays.asList(
 		ElementFactory.getServiceSpec(ElementType.FIRE_STATION),
 		ElementFactory.getServiceSpec(ElementType.POLICE_STATION));
-
-	// Start out with a road at (0,0)
-	city.add(ElementFactory.getElement(ElementType.ROAD, new Position(0,0)));
-	
   }
 
-  public static void main(String[] args) {
-	City city = new City(BASIC_CITY_LIMITS);
+  // Takes an optional checkpoint file, so that the search picks up where the last run stopped.
+  public static void main(String[] args) throws IOException {
+	City city = new City(BASIC_CITY_LIMITS, ENTRANCE);
 	addElements(city);
 
-	// Start with a road opening. First add some road, then let the algorithm
-	// run.
-	// algorithm, add something, see if all requirements are satisfied.
-	// if requirements are satisfied, then save the configuration to memory.
-	// when to stop adding? add a constraint for finishing.
-
-	// iterate through saved configurations and find highest values (# of
-	// houses, # of people), return the top configurations.
-
 	System.out.println(city);
 	System.out.println("req satisfied: " + city.areRequirementsSatisfied());
+
+	// Start out with a road at the entrance and let the search add everything else.
+	City emptyCity = new City(BASIC_CITY_LIMITS, ENTRANCE);
+	emptyCity.add(ElementFactory.getElement(ElementType.ROAD, ENTRANCE));
+	LayoutSearch.SearchOptions options = new LayoutSearch.SearchOptions(
+		Runtime.getRuntime().availableProcessors(), 10000 /* timeBudgetMillis */, 42 /* seed */, false /* deterministic */);
+	// Keep the top configurations, printing each new best one as it's found.
+	TopLayouts topLayouts = new TopLayouts(NUM_TOP_LAYOUTS, new LayoutSink.Print());
+	if (args.length > 0) {
+	  Path checkpointFile = Paths.get(args[0]);
+	  System.out.println(new LayoutCalculator().calculateLayoutWithConstraints(
+		  emptyCity, options, topLayouts, checkpointFile, 60000 /* checkpointIntervalMillis */));
+	} else {
+	  System.out.println(new LayoutCalculator().calculateLayoutWithConstraints(emptyCity, options, topLayouts));
+	}
+	for (EncodedLayout layout : topLayouts.getLayouts()) {
+	  System.out.println("Houses: " + layout.getScore() + ", elements: " + layout.getNumElements());
+	}
+
+	// The exhaustive search doesn't finish on a city this size, annealing gives a usable layout quickly.
+	LayoutAnnealer.AnnealingOptions annealingOptions = new LayoutAnnealer.AnnealingOptions(
+		Runtime.getRuntime().availableProcessors(), 5000 /* timeBudgetMillis */, 500 /* exchangeIntervalMillis */, 42 /* seed */);
+	City annealed = new LayoutCalculator().calculateLayoutWithAnnealing(
+		emptyCity, annealingOptions, new TopLayouts(1, new LayoutSink.Discard()));
+	System.out.println("Annealed layout with " + (annealed == null ? 0 : annealed.getNumElements(ElementType.HOUSE))
+		+ " houses: " + annealed);
   }
 }
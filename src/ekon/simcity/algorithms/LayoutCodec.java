@@ -0,0 +1,158 @@
+package ekon.simcity.algorithms;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary format for {@link EncodedLayout}s, used to store layouts on disk.
+ *
+ * Numbers are written as little-endian base-128 varints, so small values take one byte. Since the
+ * encoded elements of a layout are sorted, only the difference to the previous element is written,
+ * and elements of the same type next to each other in the grid take one or two bytes each.
+ *
+ * A layout is written as: numRows, numColumns, entranceCell + 1, score (zigzag encoded), number of
+ * elements, then the element deltas. Layouts can be read straight out of a mapped buffer, one after
+ * the other, without copying the buffer onto the heap first.
+ */
+class LayoutCodec {
+  private LayoutCodec() {}
+
+  /** Returns the number of bytes {@link #write} takes for the given layout. */
+  static int getEncodedSize(EncodedLayout layout) {
+	int size = getVarIntSize(layout.getNumRows())
+		+ getVarIntSize(layout.getNumColumns())
+		+ getVarIntSize(layout.getEntranceCell() + 1)
+		+ getVarLongSize(zigzag(layout.getScore()))
+		+ getVarIntSize(layout.getNumElements());
+	int previous = 0;
+	for (int i = 0; i < layout.getNumElements(); i++) {
+	  size += getVarIntSize(layout.getElement(i) - previous);
+	  previous = layout.getElement(i);
+	}
+	return size;
+  }
+
+  /** Writes the layout at the buffer's position, advancing it. */
+  static void write(EncodedLayout layout, ByteBuffer buffer) {
+	writeVarInt(layout.getNumRows(), buffer);
+	writeVarInt(layout.getNumColumns(), buffer);
+	writeVarInt(layout.getEntranceCell() + 1, buffer);
+	writeVarLong(zigzag(layout.getScore()), buffer);
+	writeVarInt(layout.getNumElements(), buffer);
+	int previous = 0;
+	for (int i = 0; i < layout.getNumElements(); i++) {
+	  writeVarInt(layout.getElement(i) - previous, buffer);
+	  previous = layout.getElement(i);
+	}
+  }
+
+  /** Reads a layout at the buffer's position, advancing it. */
+  static EncodedLayout read(ByteBuffer buffer) {
+	int numRows = readVarInt(buffer);
+	int numColumns = readVarInt(buffer);
+	int entranceCell = readVarInt(buffer) - 1;
+	long score = unzigzag(readVarLong(buffer));
+	int[] elements = new int[readVarInt(buffer)];
+	int previous = 0;
+	for (int i = 0; i < elements.length; i++) {
+	  previous += readVarInt(buffer);
+	  elements[i] = previous;
+	}
+	return new EncodedLayout(numRows, numColumns, entranceCell, elements, score);
+  }
+
+  /** Returns the number of bytes {@link #writeSortedInts} takes for the given values. */
+  static int getSortedIntsSize(int[] values) {
+	int size = getVarIntSize(values.length);
+	int previous = 0;
+	for (int value : values) {
+	  size += getVarIntSize(value - previous);
+	  previous = value;
+	}
+	return size;
+  }
+
+  /** Writes non-negative values in ascending order, as their count followed by their deltas. */
+  static void writeSortedInts(int[] values, ByteBuffer buffer) {
+	writeVarInt(values.length, buffer);
+	int previous = 0;
+	for (int value : values) {
+	  if (value < previous) throw new IllegalArgumentException("Values must be non-negative and sorted");
+	  writeVarInt(value - previous, buffer);
+	  previous = value;
+	}
+  }
+
+  static int[] readSortedInts(ByteBuffer buffer) {
+	int[] values = new int[readVarInt(buffer)];
+	int previous = 0;
+	for (int i = 0; i < values.length; i++) {
+	  previous += readVarInt(buffer);
+	  values[i] = previous;
+	}
+	return values;
+  }
+
+  // Values are treated as unsigned, so negative ones take five bytes.
+  static void writeVarInt(int value, ByteBuffer buffer) {
+	while ((value & ~0x7f) != 0) {
+	  buffer.put((byte) ((value & 0x7f) | 0x80));
+	  value >>>= 7;
+	}
+	buffer.put((byte) value);
+  }
+
+  static int readVarInt(ByteBuffer buffer) {
+	int value = 0;
+	for (int shift = 0; shift < 35; shift += 7) {
+	  byte b = buffer.get();
+	  value |= (b & 0x7f) << shift;
+	  if (b >= 0) return value;
+	}
+	throw new IllegalStateException("Malformed varint at position " + buffer.position());
+  }
+
+  static void writeVarLong(long value, ByteBuffer buffer) {
+	while ((value & ~0x7fL) != 0) {
+	  buffer.put((byte) ((value & 0x7f) | 0x80));
+	  value >>>= 7;
+	}
+	buffer.put((byte) value);
+  }
+
+  static long readVarLong(ByteBuffer buffer) {
+	long value = 0;
+	for (int shift = 0; shift < 70; shift += 7) {
+	  byte b = buffer.get();
+	  value |= (long) (b & 0x7f) << shift;
+	  if (b >= 0) return value;
+	}
+	throw new IllegalStateException("Malformed varint at position " + buffer.position());
+  }
+
+  static int getVarIntSize(int value) {
+	int size = 1;
+	while ((value & ~0x7f) != 0) {
+	  value >>>= 7;
+	  size++;
+	}
+	return size;
+  }
+
+  static int getVarLongSize(long value) {
+	int size = 1;
+	while ((value & ~0x7fL) != 0) {
+	  value >>>= 7;
+	  size++;
+	}
+	return size;
+  }
+
+  // Maps small negative and positive values to small unsigned ones.
+  private static long zigzag(long value) {
+	return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unzigzag(long value) {
+	return (value >>> 1) ^ -(value & 1);
+  }
+}
@@ -0,0 +1,57 @@
+package ekon.simcity.algorithms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import ekon.simcity.city.City;
+import ekon.simcity.city.ElementFactory;
+import ekon.simcity.city.ElementType;
+import ekon.simcity.city.Position;
+
+public class LayoutCodecTest {
+
+  /** Verify that layouts read back the same as they were written, one after the other. */
+  @Test
+  public void testWriteAndRead() {
+	City city = new City(Position.of(10, 10), Position.of(0, 0));
+	city.add(ElementFactory.getElement(ElementType.ROAD, city.getPosition(0, 0)));
+	city.add(ElementFactory.getElement(ElementType.ROAD, city.getPosition(0, 1)));
+	city.add(ElementFactory.getElement(ElementType.HOUSE, city.getPosition(1, 0)));
+	EncodedLayout first = EncodedLayout.of(city, -3);
+	EncodedLayout second = EncodedLayout.of(new City(Position.of(4, 5)), Long.MAX_VALUE);
+
+	ByteBuffer buffer = ByteBuffer.allocate(LayoutCodec.getEncodedSize(first) + LayoutCodec.getEncodedSize(second));
+	LayoutCodec.write(first, buffer);
+	LayoutCodec.write(second, buffer);
+	assertEquals(0, buffer.remaining());
+
+	buffer.flip();
+	EncodedLayout firstRead = LayoutCodec.read(buffer);
+	EncodedLayout secondRead = LayoutCodec.read(buffer);
+	assertTrue(first.isSameLayout(firstRead));
+	assertEquals(-3, firstRead.getScore());
+	assertTrue(second.isSameLayout(secondRead));
+	assertEquals(Long.MAX_VALUE, secondRead.getScore());
+  }
+
+  /** Verify that sorted values are delta encoded, so close values take a byte each. */
+  @Test
+  public void testWriteSortedInts() {
+	int[] values = {5, 6, 200, 1 << 20, Integer.MAX_VALUE};
+	ByteBuffer buffer = ByteBuffer.allocate(LayoutCodec.getSortedIntsSize(values));
+	LayoutCodec.writeSortedInts(values, buffer);
+	assertEquals(0, buffer.remaining());
+	assertEquals(1 + 1 + 1 + 2 + 3 + 5, buffer.capacity());
+
+	buffer.flip();
+	int[] read = LayoutCodec.readSortedInts(buffer);
+	assertEquals(values.length, read.length);
+	for (int i = 0; i < values.length; i++) {
+	  assertEquals(values[i], read[i]);
+	}
+  }
+}
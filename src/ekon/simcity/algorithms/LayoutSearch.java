@@ -0,0 +1,583 @@
+package ekon.simcity.algorithms;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.base.MoreObjects;
+
+import ekon.simcity.city.City;
+import ekon.simcity.city.ElementFactory;
+import ekon.simcity.city.ElementSpec;
+import ekon.simcity.city.ElementType;
+import ekon.simcity.city.GridElement;
+import ekon.simcity.metrics.Counter;
+import ekon.simcity.metrics.Metrics;
+
+/**
+ * Branch-and-bound search for the layout with the most houses that satisfies all of the city's
+ * requirements.
+ *
+ * The search grows the starting city one element at a time: first the required services, then
+ * houses and roads. Only positions returned by {@link City#findPlacements} are tried, so every
+ * element is attached to road when it's placed. Houses are only placed where the required
+ * services cover them, since services are never moved once placed.
+ *
+ * Every set of elements is enumerated once: after a move has been explored from a node, it's
+ * excluded from the subtrees of the node's remaining moves, since any layout containing it was
+ * already reachable in its own subtree. So unlike a game tree search, there's no need for a
+ * transposition table of the layouts already visited.
+ *
+ * A subtree is cut when the houses placed so far plus the houses that could still fit in the free
+ * cells can't beat the worst layout kept in the {@link TopLayouts}, so the search finds the k best
+ * layouts (just the best one by default).
+ *
+ * The top levels of the search tree are split into fork/join tasks, so idle workers steal whole
+ * subtrees from busy ones. Each task works on its own copy of the city, and below the split depth
+ * moves are applied in place and reverted with {@link City#undoTo}.
+ *
+ * A search can save its state to a {@link SearchCheckpoint} as it runs. The tasks whose subtrees
+ * haven't been fully searched are tracked, and a task adds its subtasks before it's removed, so
+ * the saved tasks always cover what's left of the search. A task cut short by the time budget is
+ * kept, so at worst the subtree a task was in the middle of is searched again after a restart.
+ */
+class LayoutSearch {
+  private static final ElementSpec HOUSE_SPEC = ElementFactory.getSpec(ElementType.HOUSE);
+  private static final ElementSpec ROAD_SPEC = ElementFactory.getSpec(ElementType.ROAD);
+  private static final int HOUSE_AREA = HOUSE_SPEC.getWidth() * HOUSE_SPEC.getHeight();
+  // Subtrees are handed out as separate tasks down to this depth and searched sequentially below it.
+  private static final int SPLIT_DEPTH = 3;
+  // Nodes expanded by all searches, unlike nodesExpanded which counts them per search.
+  private static final Counter NODES_EXPANDED = Metrics.newCounter("layoutSearch.nodesExpanded");
+
+  private final City startingCity;
+  private final SearchOptions options;
+  // Specs of the elements the search can place: the required services, then houses, then roads.
+  // A move is encoded as specIndex * numCells + cellIndex.
+  private final List<ElementSpec> moveSpecs;
+  private final int numRequiredElements;
+  private final int numColumns, numCells;
+
+  private final LongAdder nodesExpanded = new LongAdder();
+  private final TopLayouts topLayouts;
+  // Element for every move, created the first time the move is applied. Elements are immutable, so
+  // all threads can share them.
+  private final GridElement[] elementsByMove;
+  // Scratch space of every worker thread, shared by the tasks it runs one after the other.
+  private final ThreadLocal<Buffers> threadBuffers = new ThreadLocal<Buffers>() {
+	@Override
+	protected Buffers initialValue() {
+	  return new Buffers();
+	}
+  };
+  private long deadline;
+  private volatile boolean isOutOfTime;
+  // True once the node budget was used up and tasks were left unstarted.
+  private volatile boolean isOutOfNodes;
+  // Tasks whose subtrees are still to be searched, only tracked when checkpointing.
+  private Set<SearchTask> pendingTasks; // guarded by itself
+  // Nodes expanded by the runs this search was resumed from.
+  private long nodesExpandedBefore;
+
+  LayoutSearch(City startingCity, List<ElementSpec> requiredElements, SearchOptions options) {
+	this(startingCity, requiredElements, options, new TopLayouts(1, new LayoutSink.Discard()));
+  }
+
+  // Keeps the best layouts in the given top layouts, which may already hold layouts from an
+  // earlier search.
+  LayoutSearch(City startingCity, List<ElementSpec> requiredElements, SearchOptions options, TopLayouts topLayouts) {
+	this.startingCity = startingCity;
+	this.topLayouts = topLayouts;
+	this.options = options;
+	this.moveSpecs = new ArrayList<>(requiredElements);
+	moveSpecs.add(HOUSE_SPEC);
+	moveSpecs.add(ROAD_SPEC);
+	this.numRequiredElements = requiredElements.size();
+	this.numColumns = startingCity.getCityLimits().getY();
+	this.numCells = startingCity.getCityLimits().getX() * numColumns;
+	this.elementsByMove = new GridElement[moveSpecs.size() * numCells];
+  }
+
+  Result run() {
+	deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getTimeBudgetMillis());
+	// A deterministic search gets a single worker, which runs the tasks in depth-first order.
+	ForkJoinPool pool = new ForkJoinPool(options.isDeterministic() ? 1 : options.getNumThreads());
+	try {
+	  pool.invoke(new SearchTask(startingCity.copy(), new BitSet(), options.getSeed(), 0));
+	} finally {
+	  pool.shutdown();
+	}
+	return getResult();
+  }
+
+  /**
+   * Same as {@link #run()}, but saves the state of the search to the given file every
+   * checkpointIntervalMillis and once more when the search stops. If the file already holds a
+   * checkpoint, the search resumes from it instead of starting over. The time and node budgets
+   * apply to this run only.
+   */
+  Result run(Path checkpointFile, long checkpointIntervalMillis) throws IOException {
+	deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getTimeBudgetMillis());
+	pendingTasks = Collections.newSetFromMap(new IdentityHashMap<SearchTask, Boolean>());
+	final List<SearchTask> roots = new ArrayList<>();
+	if (Files.exists(checkpointFile)) {
+	  SearchCheckpoint checkpoint = SearchCheckpoint.read(checkpointFile);
+	  if (checkpoint.getSeed() != options.getSeed() || !Arrays.equals(checkpoint.getMoveSpecTypes(), getMoveSpecTypes())
+		  || !checkpoint.getCityLimits().equals(startingCity.getCityLimits())
+		  || !Objects.equals(checkpoint.getEntrance(), startingCity.getEntrance())) {
+		throw new IllegalArgumentException(checkpointFile + " is a checkpoint of a different search: " + checkpoint);
+	  }
+	  nodesExpandedBefore = checkpoint.getNodesExpanded();
+	  for (EncodedLayout layout : checkpoint.getTopLayouts()) {
+		topLayouts.offer(layout);
+	  }
+	  for (SearchCheckpoint.FrontierNode node : checkpoint.getFrontier()) {
+		roots.add(new SearchTask(node, roots.size()));
+	  }
+	} else {
+	  roots.add(new SearchTask(startingCity.copy(), new BitSet(), options.getSeed(), 0));
+	}
+	pendingTasks.addAll(roots);
+
+	// A deterministic search gets a single worker, the calling thread saves the checkpoints.
+	ForkJoinPool pool = new ForkJoinPool(options.isDeterministic() ? 1 : options.getNumThreads());
+	try {
+	  ForkJoinTask<?> search = pool.submit(new RecursiveAction() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected void compute() {
+		  invokeAll(roots);
+		}
+	  });
+	  while (true) {
+		try {
+		  search.get(checkpointIntervalMillis, TimeUnit.MILLISECONDS);
+		  break;
+		} catch (TimeoutException e) {
+		  saveCheckpoint(checkpointFile);
+		}
+	  }
+	} catch (InterruptedException e) {
+	  Thread.currentThread().interrupt();
+	} catch (ExecutionException e) {
+	  throw new IllegalStateException("Search failed", e.getCause());
+	} finally {
+	  pool.shutdownNow();
+	}
+	saveCheckpoint(checkpointFile);
+	return getResult();
+  }
+
+  private Result getResult() {
+	return new Result(topLayouts.getLayouts(), nodesExpandedBefore + nodesExpanded.sum(),
+		!isOutOfTime && !isOutOfNodes);
+  }
+
+  // The frontier is saved in depth-first order, so a resumed deterministic search explores the
+  // remaining subtrees in the order the original search would have.
+  private void saveCheckpoint(Path checkpointFile) throws IOException {
+	List<SearchTask> tasks;
+	synchronized (pendingTasks) {
+	  tasks = new ArrayList<>(pendingTasks);
+	}
+	Collections.sort(tasks, new DepthFirstOrder());
+	List<SearchCheckpoint.FrontierNode> frontier = new ArrayList<>(tasks.size());
+	for (SearchTask task : tasks) {
+	  frontier.add(task.node);
+	}
+	new SearchCheckpoint(options.getSeed(), getMoveSpecTypes(), startingCity.getCityLimits(), startingCity.getEntrance(),
+		nodesExpandedBefore + nodesExpanded.sum(), topLayouts.getLayouts(), frontier).write(checkpointFile);
+  }
+
+  private int[] getMoveSpecTypes() {
+	int[] types = new int[moveSpecs.size()];
+	for (int i = 0; i < types.length; i++) {
+	  types[i] = moveSpecs.get(i).getType().ordinal();
+	}
+	return types;
+  }
+
+  // Marks the task's subtree as searched, once its subtasks (if any) are pending instead.
+  // Unless the search ran out of time, in which case the subtree may have been cut short.
+  private void finish(SearchTask task, List<SearchTask> subtasks) {
+	if (pendingTasks == null) return;
+	synchronized (pendingTasks) {
+	  pendingTasks.addAll(subtasks);
+	  if (!isOutOfTime) pendingTasks.remove(task);
+	}
+  }
+
+  // Searches the subtree rooted at the given city on the current thread.
+  // The city, the excluded moves and the buffers are restored before returning.
+  private void search(City city, BitSet excludedMoves, long seed, Buffers buffers) {
+	int firstMove = buffers.numMoves;
+	int numMoves = expand(city, excludedMoves, seed, buffers);
+
+	int mark = city.mark();
+	for (int i = 0; i < numMoves; i++) {
+	  // Children push their moves above ours and may grow the stack, so always read it afresh.
+	  int move = buffers.moves[firstMove + i];
+	  apply(city, move);
+	  search(city, excludedMoves, mix(seed + i), buffers);
+	  city.undoTo(mark);
+	  excludedMoves.set(move);
+	}
+	for (int i = 0; i < numMoves; i++) {
+	  excludedMoves.clear(buffers.moves[firstMove + i]);
+	}
+	buffers.numMoves = firstMove;
+  }
+
+  // Visits a node: records the city if it's the best layout so far and pushes the moves to
+  // explore from it on the move stack. Returns the number of moves pushed, 0 if the node is cut.
+  private int expand(City city, BitSet excludedMoves, long seed, Buffers buffers) {
+	if (isOutOfTime || System.nanoTime() > deadline) {
+	  isOutOfTime = true;
+	  return 0;
+	}
+	nodesExpanded.increment();
+	if (Metrics.ENABLED) NODES_EXPANDED.increment();
+
+	int numHouses = city.getNumElements(ElementType.HOUSE);
+	if (city.areRequirementsSatisfied()) topLayouts.offer(city, numHouses);
+	if (numHouses + city.getNumFreeCells() / HOUSE_AREA <= topLayouts.getMinScoreToKeep()) return 0;
+	return generateMoves(city, excludedMoves, seed, buffers);
+  }
+
+  // Required services are placed before any house, one type at a time, since houses can only go
+  // where services cover them. Roads can be extended at any point and are tried last, in a seeded
+  // random order.
+  private int generateMoves(City city, BitSet excludedMoves, long seed, Buffers buffers) {
+	// At most one move per cell for the elements and one per cell for the roads.
+	buffers.ensureCapacity(2 * numCells);
+	int numElementMoves = -1;
+	for (int i = 0; i < numRequiredElements && numElementMoves < 0; i++) {
+	  ElementSpec spec = moveSpecs.get(i);
+	  if (city.getNumElements(spec.getType()) == 0) {
+		numElementMoves = pushMoves(i, city, excludedMoves, false, buffers);
+	  }
+	}
+	if (numElementMoves < 0) {
+	  numElementMoves = pushMoves(numRequiredElements, city, excludedMoves, true, buffers);
+	}
+
+	int firstRoadMove = buffers.numMoves;
+	int numRoadMoves = pushMoves(numRequiredElements + 1, city, excludedMoves, false, buffers);
+	long random = seed;
+	for (int i = numRoadMoves - 1; i > 0; i--) {
+	  random = mix(random + i);
+	  int j = (int) ((random >>> 1) % (i + 1));
+	  int swap = buffers.moves[firstRoadMove + i];
+	  buffers.moves[firstRoadMove + i] = buffers.moves[firstRoadMove + j];
+	  buffers.moves[firstRoadMove + j] = swap;
+	}
+	return numElementMoves + numRoadMoves;
+  }
+
+  // Pushes the moves placing the given spec, returns the number pushed.
+  private int pushMoves(int specIndex, City city, BitSet excludedMoves, boolean onlyCovered, Buffers buffers) {
+	ElementSpec spec = moveSpecs.get(specIndex);
+	int numPlacements = city.findPlacementCells(spec, buffers.anchorCells);
+	int numPushed = 0;
+	for (int i = 0; i < numPlacements; i++) {
+	  int cell = buffers.anchorCells[i];
+	  int move = specIndex * numCells + cell;
+	  if (excludedMoves.get(move)) continue;
+	  if (onlyCovered && !city.isCoveredByRequiredServices(spec, cell / numColumns, cell % numColumns)) continue;
+	  buffers.moves[buffers.numMoves++] = move;
+	  numPushed++;
+	}
+	return numPushed;
+  }
+
+  private void apply(City city, int move) {
+	city.add(getElement(move));
+  }
+
+  private GridElement getElement(int move) {
+	GridElement element = elementsByMove[move];
+	if (element == null) {
+	  ElementSpec spec = moveSpecs.get(move / numCells);
+	  int cell = move % numCells;
+	  element = ElementFactory.getElement(spec.getType(), startingCity.getPosition(cell / numColumns, cell % numColumns));
+	  elementsByMove[move] = element;
+	}
+	return element;
+  }
+
+  private static int[] toArray(BitSet bits) {
+	int[] values = new int[bits.cardinality()];
+	int numValues = 0;
+	for (int bit = bits.nextSetBit(0); bit >= 0; bit = bits.nextSetBit(bit + 1)) {
+	  values[numValues++] = bit;
+	}
+	return values;
+  }
+
+  // SplitMix64 finalizer, used to derive the seeds of child nodes.
+  static long mix(long z) {
+	z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+	z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+	return z ^ (z >>> 31);
+  }
+
+  // Searches a subtree, splitting it into one task per move near the top of the tree.
+  //
+  // A subtask only keeps its parent and the index of its move until it runs, and then copies the
+  // parent's city, so a node with many moves doesn't hold a city per move while they're queued.
+  // The parent's city and excluded moves aren't changed once it has split.
+  private class SearchTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+
+	private SearchTask parent; // null once the task has its own city
+	private final int moveIndex;
+	// Null until the task runs, unless the task is a root.
+	private City city;
+	private BitSet excludedMoves;
+	private final long seed;
+	private final int depth;
+	// Indices of the moves from the root task to this one, so that tasks sort in depth-first order.
+	// A task resumed from a checkpoint is a root, numbered by its position in the checkpoint.
+	private final int[] path;
+	// Moves of the subtasks, once the task has split.
+	private int[] moves;
+	// Root of the task's subtree as it's saved in checkpoints, null unless checkpointing.
+	private final SearchCheckpoint.FrontierNode node;
+
+	SearchTask(City city, BitSet excludedMoves, long seed, int depth) {
+	  this.moveIndex = -1;
+	  this.city = city;
+	  this.excludedMoves = excludedMoves;
+	  this.seed = seed;
+	  this.depth = depth;
+	  this.path = new int[0];
+	  // Saved now, since the city is changed in place while the task runs.
+	  this.node = pendingTasks == null ? null
+		  : new SearchCheckpoint.FrontierNode(EncodedLayout.of(city, 0), toArray(excludedMoves), seed, depth);
+	}
+
+	// Subtask for the parent's move at the given index.
+	SearchTask(SearchTask parent, int moveIndex) {
+	  this.parent = parent;
+	  this.moveIndex = moveIndex;
+	  this.seed = mix(parent.seed + moveIndex);
+	  this.depth = parent.depth + 1;
+	  this.path = Arrays.copyOf(parent.path, parent.path.length + 1);
+	  path[path.length - 1] = moveIndex;
+	  this.node = pendingTasks == null ? null : new SearchCheckpoint.FrontierNode(
+		  parent.node.getLayout().with(getElement(parent.moves[moveIndex])),
+		  toArray(parent.getExcludedMoves(moveIndex)), seed, depth);
+	}
+
+	// Resumes a subtree saved in a checkpoint at the given position of its frontier.
+	SearchTask(SearchCheckpoint.FrontierNode node, int index) {
+	  this.moveIndex = -1;
+	  this.seed = node.getSeed();
+	  this.depth = node.getDepth();
+	  this.path = new int[] {index};
+	  this.node = node;
+	}
+
+	// Returns the moves excluded from the subtask for the move at the given index: the ones
+	// excluded here and the moves of its earlier siblings.
+	private BitSet getExcludedMoves(int moveIndex) {
+	  BitSet excludedBySiblings = (BitSet) excludedMoves.clone();
+	  for (int i = 0; i < moveIndex; i++) {
+		excludedBySiblings.set(moves[i]);
+	  }
+	  return excludedBySiblings;
+	}
+
+	private void createCity() {
+	  if (parent != null) {
+		city = parent.city.copy();
+		apply(city, parent.moves[moveIndex]);
+		excludedMoves = parent.getExcludedMoves(moveIndex);
+		parent = null;
+	  } else {
+		city = node.getLayout().toCity();
+		city.setPlacementHeuristic(startingCity.getPlacementHeuristic());
+		excludedMoves = new BitSet();
+		for (int move : node.getExcludedMoves()) {
+		  excludedMoves.set(move);
+		}
+	  }
+	}
+
+	@Override
+	protected void compute() {
+	  // Subtrees that aren't started stay pending, so they're kept in the checkpoint.
+	  if (nodesExpanded.sum() >= options.getNodeBudget()) {
+		isOutOfNodes = true;
+		return;
+	  }
+	  if (city == null) createCity();
+	  Buffers buffers = threadBuffers.get();
+	  if (depth >= SPLIT_DEPTH) {
+		search(city, excludedMoves, seed, buffers);
+		finish(this, Collections.<SearchTask>emptyList());
+		return;
+	  }
+
+	  // The moves are copied out before the subtasks run, since this thread may run some of them
+	  // with the same buffers while it waits for the others.
+	  int firstMove = buffers.numMoves;
+	  int numMoves = expand(city, excludedMoves, seed, buffers);
+	  moves = Arrays.copyOfRange(buffers.moves, firstMove, firstMove + numMoves);
+	  buffers.numMoves = firstMove;
+	  List<SearchTask> subtasks = new ArrayList<>(moves.length);
+	  for (int i = 0; i < moves.length; i++) {
+		subtasks.add(new SearchTask(this, i));
+	  }
+	  finish(this, subtasks);
+	  invokeAll(subtasks);
+	}
+  }
+
+  // Orders tasks by their path, so that a task comes before its subtasks and after the subtasks
+  // of its earlier siblings.
+  private static class DepthFirstOrder implements Comparator<SearchTask> {
+	@Override
+	public int compare(SearchTask task1, SearchTask task2) {
+	  int length = Math.min(task1.path.length, task2.path.length);
+	  for (int i = 0; i < length; i++) {
+		if (task1.path[i] != task2.path[i]) return Integer.compare(task1.path[i], task2.path[i]);
+	  }
+	  return Integer.compare(task1.path.length, task2.path.length);
+	}
+  }
+
+  // Scratch space of one thread, see threadBuffers. Moves of the nodes on the current path are
+  // kept on one stack, so expanding a node allocates nothing once the stack has grown to the depth
+  // of the search.
+  private class Buffers {
+	private final int[] anchorCells = new int[numCells];
+	private int[] moves = new int[4 * numCells];
+	private int numMoves;
+
+	private void ensureCapacity(int numMoreMoves) {
+	  if (numMoves + numMoreMoves > moves.length) {
+		moves = Arrays.copyOf(moves, Math.max(2 * moves.length, numMoves + numMoreMoves));
+	  }
+	}
+  }
+
+  /** How to run the search. */
+  static class SearchOptions {
+	private final int numThreads;
+	private final long timeBudgetMillis;
+	private final long nodeBudget;
+	private final long seed;
+	private final boolean deterministic;
+
+	/**
+	 * @param numThreads number of worker threads, ignored in deterministic mode
+	 * @param timeBudgetMillis wall-clock time after which the best layout found so far is returned
+	 * @param seed seed for the order in which roads are tried
+	 * @param deterministic true to search on a single worker thread, so that the same seed always
+	 *     explores the same nodes in the same order (as long as the time budget isn't hit)
+	 */
+	SearchOptions(int numThreads, long timeBudgetMillis, long seed, boolean deterministic) {
+	  this(numThreads, timeBudgetMillis, Long.MAX_VALUE, seed, deterministic);
+	}
+
+	/**
+	 * Same as above, but also stops once nodeBudget nodes have been expanded. The budget is only
+	 * checked before a task's subtree is started, and a started subtree is searched to the end, so
+	 * the search can overshoot the budget by a subtree per worker. Unlike the time budget, it never
+	 * cuts a subtree short, so a deterministic search stopped by it and resumed from its checkpoint
+	 * expands exactly the nodes an uninterrupted search would.
+	 */
+	SearchOptions(int numThreads, long timeBudgetMillis, long nodeBudget, long seed, boolean deterministic) {
+	  this.numThreads = numThreads;
+	  this.timeBudgetMillis = timeBudgetMillis;
+	  this.nodeBudget = nodeBudget;
+	  this.seed = seed;
+	  this.deterministic = deterministic;
+	}
+
+	int getNumThreads() {
+	  return numThreads;
+	}
+
+	long getTimeBudgetMillis() {
+	  return timeBudgetMillis;
+	}
+
+	long getNodeBudget() {
+	  return nodeBudget;
+	}
+
+	long getSeed() {
+	  return seed;
+	}
+
+	boolean isDeterministic() {
+	  return deterministic;
+	}
+  }
+
+  /** Outcome of a search. */
+  static class Result {
+	private final List<EncodedLayout> topLayouts;
+	private final long nodesExpanded;
+	private final boolean complete;
+
+	Result(List<EncodedLayout> topLayouts, long nodesExpanded, boolean complete) {
+	  this.topLayouts = topLayouts;
+	  this.nodesExpanded = nodesExpanded;
+	  this.complete = complete;
+	}
+
+	/** Returns the best layout found, or null if no layout satisfying all requirements was found. */
+	City getBestCity() {
+	  return topLayouts.isEmpty() ? null : topLayouts.get(0).toCity();
+	}
+
+	/** Returns the number of houses in the best layout, or -1 if none was found. */
+	int getBestScore() {
+	  return topLayouts.isEmpty() ? -1 : (int) topLayouts.get(0).getScore();
+	}
+
+	/** Returns the best layouts found, best first, scored by their number of houses. */
+	List<EncodedLayout> getTopLayouts() {
+	  return topLayouts;
+	}
+
+	long getNodesExpanded() {
+	  return nodesExpanded;
+	}
+
+	/** True if the whole search space was explored, so the best layout is optimal. */
+	boolean isComplete() {
+	  return complete;
+	}
+
+	@Override
+	public String toString() {
+	  return MoreObjects.toStringHelper(this)
+		  .add("bestScore", getBestScore())
+		  .add("nodesExpanded", nodesExpanded)
+		  .add("complete", complete)
+		  .add("bestCity", getBestCity())
+		  .toString();
+	}
+  }
+}
@@ -0,0 +1,175 @@
+package ekon.simcity.algorithms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ekon.simcity.city.City;
+import ekon.simcity.city.ElementFactory;
+import ekon.simcity.city.ElementSpec;
+import ekon.simcity.city.ElementType;
+import ekon.simcity.city.Position;
+
+public class LayoutSearchTest {
+
+  private static final List<ElementSpec> REQUIRED_ELEMENTS = Arrays.asList(
+	  ElementFactory.getServiceSpec(ElementType.FIRE_STATION),
+	  ElementFactory.getServiceSpec(ElementType.POLICE_STATION));
+
+  private City city;
+
+  @Before
+  public void setUp() {
+	city = new City(Position.of(4, 5));
+	city.add(ElementFactory.getElement(ElementType.ROAD, city.getPosition(0, 0)));
+  }
+
+  /** Verify that a search that runs to completion returns a layout satisfying all requirements. */
+  @Test
+  public void testRun_complete() {
+	LayoutSearch.SearchOptions options = new LayoutSearch.SearchOptions(1, 60000, 7, true /* deterministic */);
+	LayoutSearch.Result result = new LayoutSearch(city, REQUIRED_ELEMENTS, options).run();
+
+	assertTrue(result.isComplete());
+	assertTrue(result.getBestCity().areRequirementsSatisfied());
+	assertEquals(result.getBestScore(), result.getBestCity().getNumElements(ElementType.HOUSE));
+	assertEquals(1, city.getNumElements(ElementType.ROAD)); // starting city isn't modified
+  }
+
+  /** Verify that the best layouts are kept best first, and improvements are streamed as they're found. */
+  @Test
+  public void testRun_keepsTopLayouts() {
+	final List<EncodedLayout> streamed = new ArrayList<>();
+	TopLayouts topLayouts = new TopLayouts(3, new LayoutSink() {
+	  @Override
+	  public void accept(EncodedLayout layout) {
+		streamed.add(layout);
+	  }
+	});
+	LayoutSearch.Result result = new LayoutSearch(
+		city, REQUIRED_ELEMENTS, new LayoutSearch.SearchOptions(1, 60000, 7, true), topLayouts).run();
+
+	List<EncodedLayout> layouts = result.getTopLayouts();
+	assertEquals(3, layouts.size());
+	for (int i = 1; i < layouts.size(); i++) {
+	  assertTrue(layouts.get(i - 1).getScore() >= layouts.get(i).getScore());
+	  assertFalse(layouts.get(i - 1).isSameLayout(layouts.get(i)));
+	}
+	for (EncodedLayout layout : layouts) {
+	  City layoutCity = layout.toCity();
+	  assertTrue(layoutCity.areRequirementsSatisfied());
+	  assertEquals(layout.getScore(), layoutCity.getNumElements(ElementType.HOUSE));
+	}
+	assertEquals(layouts.get(0).getScore(), streamed.get(streamed.size() - 1).getScore());
+  }
+
+  /** Verify that a search stopped by its time budget resumes from its checkpoint and completes. */
+  @Test
+  public void testRun_resumesFromCheckpoint() throws IOException {
+	Path checkpointFile = Files.createTempFile("layout-search", ".checkpoint");
+	Files.delete(checkpointFile);
+	try {
+	  LayoutSearch.Result stopped = new LayoutSearch(
+		  city, REQUIRED_ELEMENTS, new LayoutSearch.SearchOptions(1, 0, 7, true)).run(checkpointFile, 1000);
+	  assertFalse(stopped.isComplete());
+	  assertTrue(SearchCheckpoint.read(checkpointFile).getNumFrontierNodes() > 0);
+
+	  LayoutSearch.Result resumed = new LayoutSearch(
+		  city, REQUIRED_ELEMENTS, new LayoutSearch.SearchOptions(1, 60000, 7, true)).run(checkpointFile, 1000);
+	  LayoutSearch.Result uninterrupted =
+		  new LayoutSearch(city, REQUIRED_ELEMENTS, new LayoutSearch.SearchOptions(1, 60000, 7, true)).run();
+	  assertTrue(resumed.isComplete());
+	  assertEquals(uninterrupted.getBestScore(), resumed.getBestScore());
+
+	  // A completed search leaves nothing to explore.
+	  SearchCheckpoint checkpoint = SearchCheckpoint.read(checkpointFile);
+	  assertEquals(0, checkpoint.getNumFrontierNodes());
+	  assertEquals(resumed.getNodesExpanded(), checkpoint.getNodesExpanded());
+	  LayoutSearch.Result rerun = new LayoutSearch(
+		  city, REQUIRED_ELEMENTS, new LayoutSearch.SearchOptions(1, 60000, 7, true)).run(checkpointFile, 1000);
+	  assertEquals(resumed.getNodesExpanded(), rerun.getNodesExpanded());
+	  assertEquals(resumed.getBestScore(), rerun.getBestScore());
+	} finally {
+	  Files.deleteIfExists(checkpointFile);
+	}
+  }
+
+  /**
+   * Verify that a search stopped part way resumes where it stopped: it finds the same best layout
+   * as an uninterrupted search without expanding any node of a finished subtree again.
+   */
+  @Test
+  public void testRun_resumesPartialSearchFromCheckpoint() throws IOException {
+	Path checkpointFile = Files.createTempFile("layout-search", ".checkpoint");
+	Files.delete(checkpointFile);
+	try {
+	  LayoutSearch.Result uninterrupted =
+		  new LayoutSearch(city, REQUIRED_ELEMENTS, new LayoutSearch.SearchOptions(1, 60000, 7, true)).run();
+	  long nodeBudget = uninterrupted.getNodesExpanded() / 2;
+	  LayoutSearch.Result stopped = new LayoutSearch(city, REQUIRED_ELEMENTS,
+		  new LayoutSearch.SearchOptions(1, 60000, nodeBudget, 7, true)).run(checkpointFile, 60000);
+	  assertFalse(stopped.isComplete());
+	  assertTrue(stopped.getNodesExpanded() >= nodeBudget);
+	  assertTrue(stopped.getNodesExpanded() < uninterrupted.getNodesExpanded());
+	  for (SearchCheckpoint.FrontierNode node : SearchCheckpoint.read(checkpointFile).getFrontier()) {
+		assertTrue(node.getDepth() > 0);
+	  }
+
+	  LayoutSearch.Result resumed = new LayoutSearch(
+		  city, REQUIRED_ELEMENTS, new LayoutSearch.SearchOptions(1, 60000, 7, true)).run(checkpointFile, 60000);
+	  assertTrue(resumed.isComplete());
+	  assertEquals(uninterrupted.getNodesExpanded(), resumed.getNodesExpanded());
+	  assertTrue(uninterrupted.getTopLayouts().get(0).isSameLayout(resumed.getTopLayouts().get(0)));
+	} finally {
+	  Files.deleteIfExists(checkpointFile);
+	}
+  }
+
+  /** Verify that a checkpoint isn't resumed for a city with other limits or another entrance. */
+  @Test
+  public void testRun_rejectsCheckpointOfDifferentCity() throws IOException {
+	Path checkpointFile = Files.createTempFile("layout-search", ".checkpoint");
+	Files.delete(checkpointFile);
+	try {
+	  LayoutSearch.SearchOptions options = new LayoutSearch.SearchOptions(1, 0, 7, true);
+	  new LayoutSearch(city, REQUIRED_ELEMENTS, options).run(checkpointFile, 1000);
+
+	  City otherLimits = new City(Position.of(5, 4));
+	  otherLimits.add(ElementFactory.getElement(ElementType.ROAD, otherLimits.getPosition(0, 0)));
+	  City withEntrance = new City(Position.of(4, 5), Position.of(0, 0));
+	  withEntrance.add(ElementFactory.getElement(ElementType.ROAD, withEntrance.getPosition(0, 0)));
+	  for (City otherCity : Arrays.asList(otherLimits, withEntrance)) {
+		try {
+		  new LayoutSearch(otherCity, REQUIRED_ELEMENTS, options).run(checkpointFile, 1000);
+		  fail("Resumed a checkpoint of another city: " + otherCity);
+		} catch (IllegalArgumentException expected) {
+		}
+	  }
+	} finally {
+	  Files.deleteIfExists(checkpointFile);
+	}
+  }
+
+  /** Verify that the parallel search finds a layout as good as the sequential one. */
+  @Test
+  public void testRun_parallelMatchesSequential() {
+	LayoutSearch.Result sequential =
+		new LayoutSearch(city, REQUIRED_ELEMENTS, new LayoutSearch.SearchOptions(1, 60000, 7, true)).run();
+	LayoutSearch.Result parallel =
+		new LayoutSearch(city, REQUIRED_ELEMENTS, new LayoutSearch.SearchOptions(4, 60000, 7, false)).run();
+
+	assertTrue(parallel.isComplete());
+	assertEquals(sequential.getBestScore(), parallel.getBestScore());
+  }
+}
@@ -0,0 +1,26 @@
+package ekon.simcity.algorithms;
+
+/**
+ * Receives layouts as a search finds them, e.g. to print them or write them out while the search
+ * is still running.
+ *
+ * Called from the search's worker threads, one layout at a time, so implementations don't need to
+ * be thread-safe but should return quickly.
+ */
+interface LayoutSink {
+  void accept(EncodedLayout layout);
+
+  /** Drops all layouts. */
+  static class Discard implements LayoutSink {
+	@Override
+	public void accept(EncodedLayout layout) {}
+  }
+
+  /** Prints every layout to standard out. */
+  static class Print implements LayoutSink {
+	@Override
+	public void accept(EncodedLayout layout) {
+	  System.out.println("New best layout: " + layout);
+	}
+  }
+}
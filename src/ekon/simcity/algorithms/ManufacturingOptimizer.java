@@ -1,17 +1,20 @@
 package ekon.simcity.algorithms;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 
+import ekon.simcity.city.BillOfMaterials;
 import ekon.simcity.city.Item;
 import ekon.simcity.city.Item.MaxSellingPriceComparator;
 import ekon.simcity.city.ManufacturingFacility;
 import ekon.simcity.city.ManufacturingFacility.Slot;
 import ekon.simcity.city.ProductionRunner;
+import ekon.simcity.city.Store;
+import ekon.simcity.metrics.Counter;
+import ekon.simcity.metrics.Metrics;
 
 /**
  * Optimizer running factories and stores to their full potential.
@@ -25,16 +28,74 @@ import ekon.simcity.city.ProductionRunner;
  * Note: This is not thread-safe since stores and factories are not immutable.
  */
 class ManufacturingOptimizer {
+  private static final Item[] ITEMS = Item.values();
+  private static final int NUM_ITEMS = ITEMS.length;
+  private static final ManufacturingFacility.Type[] FACILITY_TYPES = ManufacturingFacility.Type.values();
+  private static final int NUM_FACILITY_TYPES = FACILITY_TYPES.length;
+  // Short enough to plan on every request, long enough to solve typical cities exactly.
+  private static final long DEFAULT_TIME_BUDGET_MILLIS = 20;
+  // Number of recipes looked at while planning which items to make, ingredients included.
+  private static final Counter RECIPE_EXPANSIONS = Metrics.newCounter("manufacturingOptimizer.recipeExpansions");
+
+  // Time after which optimizeForSelling settles for the best plan found so far.
+  private final long timeBudgetMillis;
+
+  ManufacturingOptimizer() {
+	this(DEFAULT_TIME_BUDGET_MILLIS);
+  }
 
+  ManufacturingOptimizer(long timeBudgetMillis) {
+	this.timeBudgetMillis = timeBudgetMillis;
+  }
 
   /**
    * Optimize the manufacturing facilities for selling items on the exchange.
    * 
    * Given an initial snapshot of the manufacturing facilities, it modifies it using this algorithm.
+   * 
+   * Fills the free slots with the items, made from raw materials, that sell for the most in total.
+   * Unlike making the most expensive items first, this can pick several cheaper items that use the
+   * slots better. See {@link SellingKnapsack}.
    */
   void optimizeForSelling(ProductionRunner productionRunner) {
+	optimizeForSelling(productionRunner, productionRunner.getUnlockedItems().values(), null /* freeMinutes */);
+  }
+
+  /**
+   * Like {@link #optimizeForSelling(ProductionRunner)}, but only makes what can be finished within the
+   * given number of minutes. Stores make one item at a time, so the items put in a store must all be
+   * made one after the other, after the ones already queued there, while factories make theirs in
+   * parallel.
+   */
+  void optimizeForSelling(ProductionRunner productionRunner, int horizonMinutes) {
+	List<Item> items = Lists.newArrayList();
+	for (Item item : productionRunner.getUnlockedItems().values()) {
+	  if (BillOfMaterials.getCriticalPathMinutes(item) <= horizonMinutes) items.add(item);
+	}
+	int[] freeMinutes = new int[NUM_FACILITY_TYPES];
+	Arrays.fill(freeMinutes, Integer.MAX_VALUE);
+	for (ManufacturingFacility facility : productionRunner.getFacilities().values()) {
+	  if (facility instanceof Store) {
+		freeMinutes[facility.getType().ordinal()] = Math.max(0, horizonMinutes - ((Store) facility).getQueuedMinutes());
+	  }
+	}
+	optimizeForSelling(productionRunner, items, freeMinutes);
+  }
+
+  private void optimizeForSelling(ProductionRunner productionRunner, Collection<Item> items, int[] freeMinutes) {
+	int[] freeSlots = new int[NUM_FACILITY_TYPES];
+	for (ManufacturingFacility facility : productionRunner.getFacilities().values()) {
+	  freeSlots[facility.getType().ordinal()] = facility.getNumFreeSlots();
+	}
+	int[] itemCounts = new SellingKnapsack(items, freeSlots, freeMinutes, timeBudgetMillis).solve();
 	
-	// A simple starting strategy is to try to sell the most expensive items from each facility.
+	for (Item item : ITEMS) {
+	  if (itemCounts[item.ordinal()] == 0) continue;
+	  for (Item ingredient : ITEMS) {
+		int count = itemCounts[item.ordinal()] * BillOfMaterials.getTotalQuantity(item, ingredient);
+		if (count > 0) productionRunner.getFacility(ingredient.getManufacturingFacilityType()).reserve(ingredient, count);
+	  }
+	}
   }
   
   /**
@@ -46,136 +107,84 @@ class ManufacturingOptimizer {
    */
   void optimizeToSellMostExpensiveItems(boolean useExistingItems, ProductionRunner productionRunner) {
 	// Sort items by price and go through them to fill up manufacturing slots until there are none left.
-
-	// TOOD: not sure if i can just pass an array to a vararg constructor for asList.
 	List<Item> itemsSortedByMaxSellingPrice = Lists.newArrayList(productionRunner.getUnlockedItems().values());
-	itemsSortedByMaxSellingPrice.sort(new MaxSellingPriceComparator()); // looks like this is in increasing order, but I want it in decreasing order.
-	
-	// Dump existing items in production into a temp map which we can then use
-	// for reserving existing items, if that's an option.
-	Map<Item, Integer> itemsInProduction = new HashMap<>();
+	itemsSortedByMaxSellingPrice.sort(new MaxSellingPriceComparator()); // increasing order, so start from the end.
+
+	// Items in production that can be used as ingredients, if that's an option, by item ordinal.
+	Inventory itemsInProduction = new Inventory(NUM_ITEMS);
 	if (useExistingItems) {
 	  for (ManufacturingFacility facility : productionRunner.getFacilities().values()) {
 		for (Slot slot : facility.getSlots()) {
-		  if (slot.hasItem()) {
-			Item item = slot.getItem();
-			itemsInProduction.put(item, itemsInProduction.containsKey(item) ? itemsInProduction.get(item) + 1 : 1);
-		  }
+		  if (slot.hasItem()) itemsInProduction.add(slot.getItem().ordinal(), 1);
 		}
 	  }
 	}
+	// Facility types that don't exist have no free slots.
+	Inventory freeSlots = new Inventory(NUM_FACILITY_TYPES);
+	for (ManufacturingFacility facility : productionRunner.getFacilities().values()) {
+	  freeSlots.add(facility.getType().ordinal(), facility.getNumFreeSlots());
+	}
 
-	// TODO: Want to be able to manufacture as many of the most expensive type of product as possible, then move on to the less expensive ones.
+	// How many of each item to make for the item being considered, reused for every item.
+	int[] itemsToMake = new int[NUM_ITEMS];
 	
+	// Manufacture as many of the most expensive item as possible, then move on to the less expensive ones.
 	int expensiveItemIndex = itemsSortedByMaxSellingPrice.size() - 1;
-	Item expensiveItem = itemsSortedByMaxSellingPrice.get(expensiveItemIndex);
-	do {
-	  // Recursively find required ingredients and add to facilities if not
-	  // already there.
-	  // Create a plan for the required ingredients for the item. Then verify if
-	  // all required ingredients
-	  // will fit in the open slots. Otherwise, don't make this item.
-
-	  // This is to keep track of which existing items in facilities we're going
-	  // to make use of.
-	  // This will be needed if we choose to not make an item so that we can add
-	  // its required ingredients back into the
-	  // itemsInProduction map.
-	  Map<Item, Integer> itemsSubtractedFromProduction = new HashMap<>();
-
-	  // Keeps track of the number of slots required in each facility for manufacturing item.
-	  // This is used for determining if we have enough required slots in each facility to produce item and its ingredients.
-	  Map<ManufacturingFacility.Type, Integer> facilityTypeToNumSlotsMap = new HashMap<>();
-
-	  // Keeps track of all of the items that need to be manufactured. This is related to facilityTypeToNumSlotsMap
-	  // in that facilityTypeToNumSlotsMap keeps track of the number of slots needed in each facility instead of the items.
-	  // Seems easier to keep track of these things separately instead of in a single data structure for easier access.
-	  Map<Item, Integer> allRequiredItems = new HashMap<>();
-	  tryToManufactureItem(expensiveItem, 1 /* numCopeis */, itemsInProduction, itemsSubtractedFromProduction,
-		  facilityTypeToNumSlotsMap, allRequiredItems);
-
-	  // Verify if we can actually manufacture this item.
-	  boolean canManufactureItem = true;
-	  for (ManufacturingFacility.Type manufacturingFacilityType : facilityTypeToNumSlotsMap.keySet()) {
-		if (!productionRunner.hasFacility(manufacturingFacilityType)) {
-		  canManufactureItem = false;
-		  break;
-		}
-
-		int neededSlots = facilityTypeToNumSlotsMap.get(manufacturingFacilityType);
-		int freeSlots = productionRunner.getFacility(manufacturingFacilityType).getNumFreeSlots();
-		if (freeSlots < neededSlots) {
-		  canManufactureItem = false;
-		  break;
-		}
-	  }
-	  
-	  if (canManufactureItem) {
-		// Now that we know we can manufacture, actually reserve the facility slots in the snapshot.
-		// TODO: could potentially improve this if kept track of all items needed to manufacture in a facility
-		// and be able to query for that in one call (since makeItems can take a list of items.
-		for (Item itemToManufacture : allRequiredItems.keySet()) {
-		  ManufacturingFacility.Type facilityType = itemToManufacture.getManufacturingFacilityType();
-		  productionRunner.getFacility(facilityType).makeItems(itemToManufacture);
-		}
-	  } else {
-		  // If can't manufacture item, then put reserved items back into production map.
-		for (Item subtractedItem : itemsSubtractedFromProduction.keySet()) {
-		  int currentNumInProd = itemsInProduction.get(subtractedItem);
-		  int numSubtracted = itemsSubtractedFromProduction.get(subtractedItem);
-		  itemsInProduction.put(subtractedItem, currentNumInProd + numSubtracted);
-		}
-		
-		// Move on to the next most-expensive item.
+	while (expensiveItemIndex >= 0 && freeSlots.hasAny()) {
+	  Item expensiveItem = itemsSortedByMaxSellingPrice.get(expensiveItemIndex);
+	  itemsInProduction.snapshot();
+	  freeSlots.snapshot();
+	  if (!reserveItem(expensiveItem, useExistingItems, itemsInProduction, freeSlots, itemsToMake)) {
+		// Give back whatever was reserved and move on to the next most-expensive item.
+		itemsInProduction.restore();
+		freeSlots.restore();
 		expensiveItemIndex--;
-		expensiveItem = itemsSortedByMaxSellingPrice.get(expensiveItemIndex);
+		continue;
+	  }
+
+	  // Now that the slots are reserved, actually put the items in production in the snapshot.
+	  for (int o = 0; o < NUM_ITEMS; o++) {
+		if (itemsToMake[o] > 0) productionRunner.getFacility(ITEMS[o].getManufacturingFacilityType()).reserve(ITEMS[o], itemsToMake[o]);
 	  }
-	} while (noMoreFreeSlotsLeft(productionRunner));
-  }
-  
-  private boolean noMoreFreeSlotsLeft(ProductionRunner prodRunner) {
-	for (ManufacturingFacility facility : prodRunner.getFacilities().values()) {
-	  if (facility.getNumFreeSlots() != 0) return true;
 	}
-	return false;
   }
-
-  private void tryToManufactureItem(Item requiredItem,
-	  int numCopies,
-	  Map<Item, Integer> itemsInProduction,
-	  Map<Item, Integer> itemsSubtractedFromProduction,
-	  Map<ManufacturingFacility.Type, Integer> facilityTypeToNumSlotsMap,
-	  Map<Item, Integer> allRequiredItems) {
-	int numExisting = 0;
-	
-	// If item already in production and we're allowed to use it, then use it. Otherwise, add it to manufacturing queue.
-	if (itemsInProduction.containsKey(requiredItem)) {
-	  int numAvailable = itemsInProduction.get(requiredItem);
-	  numExisting = numCopies < numAvailable ? numCopies : numAvailable;
-
-	  // Update map of existing items to remove the ones we're going to use
-	  // from future calculations.
-	  // However, in the case that this item doens't get made at the end,
-	  // we'll have to go back and re-add these
-	  // items back to the itemsInProduction map.
-	  // This subtraction is done right now because there could be a
-	  // sequence of dependencies on the same item.
-	  // For example, item A could depend on B and C and item B also depends
-	  // on C.
-	  itemsInProduction.put(requiredItem, numAvailable - numExisting);
-	  itemsSubtractedFromProduction.put(requiredItem, numExisting);
-	} else {
-	  int numOfItemNeedToManufacture = numCopies - numExisting;
-      facilityTypeToNumSlotsMap.put(requiredItem.getManufacturingFacilityType(), numOfItemNeedToManufacture);
-	  allRequiredItems.put(requiredItem, numOfItemNeedToManufacture); 
+  
+  // Reserves what it takes to make one of the given item: the items in production it uses as
+  // ingredients and the slots for everything else, filling in how many of each item to make. The
+  // item itself is always made, only its ingredients can be taken from the items in production.
+  // Returns false if there aren't enough free slots, leaving the reservations to be rolled back.
+  private boolean reserveItem(Item item, boolean useExistingItems, Inventory itemsInProduction, Inventory freeSlots,
+	  int[] itemsToMake) {
+	if (!useExistingItems) {
+	  // Everything is made from raw materials, which the bill of materials already has.
+	  if (Metrics.ENABLED) RECIPE_EXPANSIONS.increment();
+	  for (int o = 0; o < NUM_ITEMS; o++) {
+		itemsToMake[o] = BillOfMaterials.getTotalQuantity(item, ITEMS[o]);
+	  }
+	  for (int t = 0; t < NUM_FACILITY_TYPES; t++) {
+		if (!freeSlots.tryTake(t, BillOfMaterials.getSlotDemand(item, FACILITY_TYPES[t]))) return false;
+	  }
+	  return true;
 	}
 
-	// Now manufacture recursively for each required ingredient.
-	ImmutableMap<Item, Integer> requiredIngredients = requiredItem.getRequiredIngredients();
-	for (Item childRequiredIngredient : requiredIngredients.keySet()) {
-	  tryToManufactureItem(childRequiredIngredient, requiredIngredients.get(childRequiredIngredient),
-		  itemsInProduction, itemsSubtractedFromProduction, facilityTypeToNumSlotsMap, allRequiredItems);
+	// Ingredients always come before the items made from them, so going down from the item
+	// visits every item after everything that needs it.
+	Arrays.fill(itemsToMake, 0);
+	int[] itemsNeeded = itemsToMake; // needed items are turned into items to make in place.
+	itemsNeeded[item.ordinal()] = 1;
+	for (int o = item.ordinal(); o >= 0; o--) {
+	  if (itemsNeeded[o] == 0) continue;
+	  if (Metrics.ENABLED) RECIPE_EXPANSIONS.increment();
+	  if (o != item.ordinal()) {
+		itemsToMake[o] = itemsNeeded[o] - itemsInProduction.take(o, itemsNeeded[o]);
+	  }
+	  if (!freeSlots.tryTake(ITEMS[o].getManufacturingFacilityType().ordinal(), itemsToMake[o])) return false;
+	  for (int i = 0; i < BillOfMaterials.getNumIngredients(ITEMS[o]); i++) {
+		itemsNeeded[BillOfMaterials.getIngredient(ITEMS[o], i)] +=
+			itemsToMake[o] * BillOfMaterials.getIngredientQuantity(ITEMS[o], i);
+	  }
 	}
+	return true;
   }
   
   /**
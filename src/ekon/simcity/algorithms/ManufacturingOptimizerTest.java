@@ -154,4 +154,68 @@ public class ManufacturingOptimizerTest {
 	assertEquals(facility.getSlots().size() - 1, facility.getNumFreeSlots()); // one slot taken to make a nail, there should not be enough metal to make a second nail
 	assertEquals(Item.NAILS, facility.getSlots().get(0).getItem());
   }
+
+  /** Verify that items with several ingredients reserve a slot for every ingredient they need. */
+  @Test
+  public void testOptimizeToSellMostExpensiveItems_multipleIngredients() {
+	setUpFactory(ImmutableList.of(Item.METAL, Item.WOOD));
+	setUpStore(ManufacturingFacility.Type.HARDWARE_STORE, 2, ImmutableList.of(Item.HAMMER));
+
+	ManufacturingOptimizer optimizer = new ManufacturingOptimizer();
+	optimizer.optimizeToSellMostExpensiveItems(false /* useExistingItems */, prodRunner);
+
+	// A hammer takes a metal and a wood, which leaves one factory slot for the next most expensive item.
+	ManufacturingFacility facility = prodRunner.getFacility(ManufacturingFacility.Type.HARDWARE_STORE);
+	assertEquals(1, facility.getNumFreeSlots());
+	assertEquals(Item.HAMMER, facility.getSlots().get(0).getItem());
+
+	facility = getFactory();
+	assertEquals(0, facility.getNumFreeSlots());
+	assertEquals(Item.METAL, facility.getSlots().get(0).getItem());
+	assertEquals(Item.WOOD, facility.getSlots().get(1).getItem());
+	assertEquals(Item.WOOD, facility.getSlots().get(2).getItem());
+  }
+
+  /** Verify that selling fills the slots with what sells for the most in total, not the most expensive item. */
+  @Test
+  public void testOptimizeForSelling_beatsMostExpensiveFirst() {
+	setUpFactory(ImmutableList.of());
+	setUpStore(ManufacturingFacility.Type.FASHION_STORE, 1, ImmutableList.of(Item.WATCH));
+	setUpStore(ManufacturingFacility.Type.FARMERS_MARKET, 3, ImmutableList.of(Item.CREAM));
+
+	ManufacturingOptimizer optimizer = new ManufacturingOptimizer();
+	optimizer.optimizeForSelling(prodRunner);
+
+	// A watch (580) takes all three factory slots, but three creams (440 each) sell for more.
+	assertEquals(1, prodRunner.getFacility(ManufacturingFacility.Type.FASHION_STORE).getNumFreeSlots());
+	ManufacturingFacility facility = prodRunner.getFacility(ManufacturingFacility.Type.FARMERS_MARKET);
+	assertEquals(0, facility.getNumFreeSlots());
+	for (Slot slot : facility.getSlots()) {
+	  assertEquals(Item.CREAM, slot.getItem());
+	}
+
+	facility = getFactory();
+	assertEquals(0, facility.getNumFreeSlots());
+	for (Slot slot : facility.getSlots()) {
+	  assertEquals(Item.ANIMAL_FEED, slot.getItem());
+	}
+  }
+
+  /** Verify that selling within a time limit only queues in a store what it can make in time. */
+  @Test
+  public void testOptimizeForSelling_horizon() {
+	setUpFactory(ImmutableList.of());
+	setUpStore(ManufacturingFacility.Type.BUILDING_SUPPLY_STORE, 3, ImmutableList.of(Item.NAILS, Item.PLANKS), Item.NAILS);
+
+	// The queued nails take 5 minutes, which leaves 29: not enough for planks (30), enough for nails.
+	ManufacturingOptimizer optimizer = new ManufacturingOptimizer();
+	optimizer.optimizeForSelling(prodRunner, 34 /* horizonMinutes */);
+
+	ManufacturingFacility facility = prodRunner.getFacility(ManufacturingFacility.Type.BUILDING_SUPPLY_STORE);
+	assertEquals(1, facility.getNumFreeSlots());
+	assertEquals(Item.NAILS, facility.getSlots().get(1).getItem());
+	facility = getFactory();
+	assertEquals(1, facility.getNumFreeSlots());
+	assertEquals(Item.METAL, facility.getSlots().get(0).getItem());
+  }
 }
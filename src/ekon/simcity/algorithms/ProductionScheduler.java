@@ -0,0 +1,301 @@
+package ekon.simcity.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.base.MoreObjects;
+
+import ekon.simcity.city.BillOfMaterials;
+import ekon.simcity.city.Item;
+import ekon.simcity.city.ManufacturingFacility;
+import ekon.simcity.city.ManufacturingFacility.Slot;
+import ekon.simcity.city.ProductionRunner;
+import ekon.simcity.city.Store;
+
+/**
+ * Plans when to make a set of target items, and everything that goes into them, across all the
+ * facilities of a production runner, so that the last one is done as early as possible.
+ *
+ * Every target is expanded down its recipes to raw materials, and every item made is a job that
+ * can start once its ingredients are finished. Factories make items in parallel in their slots,
+ * while a {@link Store} makes one at a time after the items already in its queue. Items already in
+ * production are assumed to have started at the given minute unless they started earlier, and
+ * finished items are assumed to be picked up right away.
+ *
+ * Jobs are placed with list scheduling (Giffler-Thompson): take the job that could finish first, and
+ * of the jobs competing with it for the same facility, place the one with the longest critical path
+ * left after it, i.e. the most minutes of items still to be made from it. The result is an active
+ * schedule, where no job could start earlier without delaying another one.
+ *
+ * Note: not thread-safe.
+ */
+class ProductionScheduler {
+  private static final Item[] ITEMS = Item.values();
+  private static final int NUM_FACILITY_TYPES = ManufacturingFacility.Type.values().length;
+
+  /**
+   * Plans making the target items.
+   *
+   * @param productionRunner facilities to make the items in, left unchanged
+   * @param targets items to make, in no particular order, the same item as many times as it's needed
+   * @param minute current minute, when the first items can start
+   */
+  Schedule schedule(ProductionRunner productionRunner, List<Item> targets, long minute) {
+	// When each slot (machine) of each facility type is next free, one for a store.
+	long[][] machineFreeMinutes = new long[NUM_FACILITY_TYPES][];
+	for (ManufacturingFacility facility : productionRunner.getFacilities().values()) {
+	  machineFreeMinutes[facility.getType().ordinal()] = getMachineFreeMinutes(facility, minute);
+	}
+
+	// Jobs in the order they're expanded: each target followed by its ingredients, depth first.
+	int numJobs = 0;
+	for (Item target : targets) {
+	  for (Item item : ITEMS) {
+		numJobs += BillOfMaterials.getTotalQuantity(target, item);
+	  }
+	}
+	Jobs jobs = new Jobs(numJobs, targets.size());
+	for (int t = 0; t < targets.size(); t++) {
+	  jobs.add(targets.get(t), -1 /* parent */, machineFreeMinutes);
+	}
+
+	// Jobs whose ingredients are all scheduled, with the earliest they could start.
+	int[] eligible = new int[numJobs];
+	int numEligible = 0;
+	long[] earliestStarts = new long[numJobs];
+	for (int j = 0; j < numJobs; j++) {
+	  if (jobs.numUnscheduledIngredients[j] == 0) eligible[numEligible++] = j;
+	}
+	List<ScheduledItem> scheduledItems = new ArrayList<>(numJobs);
+	while (numEligible > 0) {
+	  // The job that could finish first decides the facility and the machine.
+	  int first = -1;
+	  long firstFinish = Long.MAX_VALUE;
+	  for (int e = 0; e < numEligible; e++) {
+		int j = eligible[e];
+		long[] machines = machineFreeMinutes[jobs.facilityTypes[j]];
+		earliestStarts[j] = Math.max(jobs.readyMinutes[j], machines[getFirstFreeMachine(machines)]);
+		long finish = earliestStarts[j] + ITEMS[jobs.items[j]].getMinutesToMake();
+		if (finish < firstFinish) {
+		  first = j;
+		  firstFinish = finish;
+		}
+	  }
+	  long[] machines = machineFreeMinutes[jobs.facilityTypes[first]];
+	  int machine = getFirstFreeMachine(machines);
+
+	  // Of the jobs that would start on that machine before it finishes, take the most critical.
+	  int chosen = first;
+	  int chosenIndex = -1;
+	  for (int e = 0; e < numEligible; e++) {
+		int j = eligible[e];
+		if (j == chosen) chosenIndex = e;
+		if (jobs.facilityTypes[j] != jobs.facilityTypes[first] || earliestStarts[j] >= firstFinish) continue;
+		if (jobs.tails[j] > jobs.tails[chosen]
+			|| (jobs.tails[j] == jobs.tails[chosen] && earliestStarts[j] < earliestStarts[chosen])) {
+		  chosen = j;
+		  chosenIndex = e;
+		}
+	  }
+
+	  long start = Math.max(jobs.readyMinutes[chosen], machines[machine]);
+	  long finish = start + ITEMS[jobs.items[chosen]].getMinutesToMake();
+	  machines[machine] = finish;
+	  jobs.finishMinutes[chosen] = finish;
+	  scheduledItems.add(new ScheduledItem(ITEMS[jobs.items[chosen]], chosen, start, finish));
+	  eligible[chosenIndex] = eligible[--numEligible];
+
+	  int parent = jobs.parents[chosen];
+	  if (parent >= 0) {
+		jobs.readyMinutes[parent] = Math.max(jobs.readyMinutes[parent], finish);
+		if (--jobs.numUnscheduledIngredients[parent] == 0) eligible[numEligible++] = parent;
+	  }
+	}
+
+	Collections.sort(scheduledItems, new StartMinuteComparator());
+	long[] targetFinishMinutes = new long[targets.size()];
+	for (int t = 0; t < targets.size(); t++) {
+	  targetFinishMinutes[t] = jobs.finishMinutes[jobs.targetJobs[t]];
+	}
+	return new Schedule(minute, targets, scheduledItems, targetFinishMinutes);
+  }
+
+  private static long[] getMachineFreeMinutes(ManufacturingFacility facility, long minute) {
+	if (facility instanceof Store) {
+	  Store store = (Store) facility;
+	  long queueFinishMinute = store.getQueueSize() == 0 ? minute : store.getFinishMinute(store.getQueueSize() - 1, minute);
+	  return new long[] {Math.max(minute, queueFinishMinute)};
+	}
+	long[] machineFreeMinutes = new long[facility.getSlots().size()];
+	for (int i = 0; i < machineFreeMinutes.length; i++) {
+	  Slot slot = facility.getSlots().get(i);
+	  if (!slot.hasItem()) {
+		machineFreeMinutes[i] = minute;
+	  } else if (slot.isStarted()) {
+		machineFreeMinutes[i] = Math.max(minute, slot.getFinishMinute());
+	  } else {
+		machineFreeMinutes[i] = minute + slot.getItem().getMinutesToMake();
+	  }
+	}
+	return machineFreeMinutes;
+  }
+
+  private static int getFirstFreeMachine(long[] machineFreeMinutes) {
+	int first = 0;
+	for (int i = 1; i < machineFreeMinutes.length; i++) {
+	  if (machineFreeMinutes[i] < machineFreeMinutes[first]) first = i;
+	}
+	return first;
+  }
+
+  // Items to make, by job index, as parallel arrays. Every job is an ingredient of at most one other job.
+  private static class Jobs {
+	private final int[] items; // ordinals
+	private final int[] facilityTypes; // ordinals
+	private final int[] parents; // job made from this one, -1 for targets
+	// Minutes of the items still to be made from this one after it's finished, up to its target.
+	private final long[] tails;
+	private final int[] numUnscheduledIngredients;
+	private final long[] readyMinutes; // when all the ingredients scheduled so far are finished
+	private final long[] finishMinutes;
+	private final int[] targetJobs;
+	private int numJobs;
+	private int numTargetJobs;
+
+	Jobs(int capacity, int numTargets) {
+	  targetJobs = new int[numTargets];
+	  items = new int[capacity];
+	  facilityTypes = new int[capacity];
+	  parents = new int[capacity];
+	  tails = new long[capacity];
+	  numUnscheduledIngredients = new int[capacity];
+	  readyMinutes = new long[capacity];
+	  finishMinutes = new long[capacity];
+	}
+
+	private int add(Item item, int parent, long[][] machineFreeMinutes) {
+	  if (machineFreeMinutes[item.getManufacturingFacilityType().ordinal()] == null) {
+		throw new IllegalArgumentException("No facility to make " + item);
+	  }
+	  int j = numJobs++;
+	  if (parent < 0) targetJobs[numTargetJobs++] = j;
+	  items[j] = item.ordinal();
+	  facilityTypes[j] = item.getManufacturingFacilityType().ordinal();
+	  parents[j] = parent;
+	  tails[j] = parent < 0 ? 0 : tails[parent] + ITEMS[items[parent]].getMinutesToMake();
+	  for (int i = 0; i < BillOfMaterials.getNumIngredients(item); i++) {
+		for (int q = 0; q < BillOfMaterials.getIngredientQuantity(item, i); q++) {
+		  add(ITEMS[BillOfMaterials.getIngredient(item, i)], j, machineFreeMinutes);
+		  numUnscheduledIngredients[j]++;
+		}
+	  }
+	  return j;
+	}
+  }
+
+  /** An item placed in the schedule. */
+  static class ScheduledItem {
+	private final Item item;
+	private final int job;
+	private final long startMinute;
+	private final long finishMinute;
+
+	ScheduledItem(Item item, int job, long startMinute, long finishMinute) {
+	  this.item = item;
+	  this.job = job;
+	  this.startMinute = startMinute;
+	  this.finishMinute = finishMinute;
+	}
+
+	Item getItem() {
+	  return item;
+	}
+
+	ManufacturingFacility.Type getFacilityType() {
+	  return item.getManufacturingFacilityType();
+	}
+
+	long getStartMinute() {
+	  return startMinute;
+	}
+
+	long getFinishMinute() {
+	  return finishMinute;
+	}
+
+	@Override
+	public String toString() {
+	  return MoreObjects.toStringHelper(this)
+		  .add("item", item.name())
+		  .add("startMinute", startMinute)
+		  .add("finishMinute", finishMinute)
+		  .toString();
+	}
+  }
+
+  /** When to make every item, by start minute, and when each target is done. */
+  static class Schedule {
+	private final long minute;
+	private final List<Item> targets;
+	private final List<ScheduledItem> items;
+	private final long[] targetFinishMinutes;
+
+	Schedule(long minute, List<Item> targets, List<ScheduledItem> items, long[] targetFinishMinutes) {
+	  this.minute = minute;
+	  this.targets = targets;
+	  this.items = items;
+	  this.targetFinishMinutes = targetFinishMinutes;
+	}
+
+	/** Returns every item to make, ingredients included, in the order they start. */
+	List<ScheduledItem> getItems() {
+	  return items;
+	}
+
+	/** Returns the minute the target with the given index is done. */
+	long getFinishMinute(int target) {
+	  return targetFinishMinutes[target];
+	}
+
+	/** Returns the minute the last of the targets of the given item is done. */
+	long getFinishMinute(Item item) {
+	  long finishMinute = -1;
+	  for (int t = 0; t < targets.size(); t++) {
+		if (targets.get(t) == item) finishMinute = Math.max(finishMinute, targetFinishMinutes[t]);
+	  }
+	  if (finishMinute < 0) throw new IllegalArgumentException(item + " is not a target");
+	  return finishMinute;
+	}
+
+	/** Returns the minutes from the start of the schedule until every target is done. */
+	long getMakespanMinutes() {
+	  long lastFinishMinute = minute;
+	  for (long finishMinute : targetFinishMinutes) {
+		lastFinishMinute = Math.max(lastFinishMinute, finishMinute);
+	  }
+	  return lastFinishMinute - minute;
+	}
+
+	@Override
+	public String toString() {
+	  return MoreObjects.toStringHelper(this)
+		  .add("minute", minute)
+		  .add("makespanMinutes", getMakespanMinutes())
+		  .add("targetFinishMinutes", Arrays.toString(targetFinishMinutes))
+		  .add("items", items)
+		  .toString();
+	}
+  }
+
+  // Orders scheduled items by start minute, then by the order they were expanded in.
+  private static class StartMinuteComparator implements Comparator<ScheduledItem> {
+	@Override
+	public int compare(ScheduledItem i1, ScheduledItem i2) {
+	  int byStart = Long.compare(i1.startMinute, i2.startMinute);
+	  return byStart != 0 ? byStart : Integer.compare(i1.job, i2.job);
+	}
+  }
+}
@@ -0,0 +1,68 @@
+package ekon.simcity.algorithms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import ekon.simcity.algorithms.ProductionScheduler.Schedule;
+import ekon.simcity.algorithms.ProductionScheduler.ScheduledItem;
+import ekon.simcity.city.Factory;
+import ekon.simcity.city.FactoryType;
+import ekon.simcity.city.Item;
+import ekon.simcity.city.ManufacturingFacility;
+import ekon.simcity.city.ProductionRunner;
+import ekon.simcity.city.Store;
+
+public class ProductionSchedulerTest {
+
+  private ProductionRunner prodRunner;
+
+  @Before
+  public void setUp() {
+	prodRunner = new ProductionRunner();
+	prodRunner.addFacility(new Factory(FactoryType.SMALL_FACTORY));
+	prodRunner.addFacility(new Store(ManufacturingFacility.Type.BUILDING_SUPPLY_STORE, 2));
+  }
+
+  /** Verify that items only start once their ingredients are finished. */
+  @Test
+  public void testSchedule_waitsForIngredients() {
+	Schedule schedule = new ProductionScheduler().schedule(prodRunner, ImmutableList.of(Item.NAILS), 100 /* minute */);
+
+	List<ScheduledItem> items = schedule.getItems();
+	assertEquals(3, items.size());
+	assertEquals(Item.METAL, items.get(0).getItem());
+	assertEquals(100, items.get(0).getStartMinute());
+	assertEquals(Item.METAL, items.get(1).getItem());
+	assertEquals(100, items.get(1).getStartMinute());
+	assertEquals(Item.NAILS, items.get(2).getItem());
+	assertEquals(101, items.get(2).getStartMinute());
+	assertEquals(106, schedule.getFinishMinute(Item.NAILS));
+	assertEquals(6, schedule.getMakespanMinutes());
+  }
+
+  /** Verify that a store makes one item at a time, after the ones already in its queue. */
+  @Test
+  public void testSchedule_storeInSequence() {
+	prodRunner.getFacility(ManufacturingFacility.Type.BUILDING_SUPPLY_STORE).makeItems(Item.BRIKS);
+
+	Schedule schedule = new ProductionScheduler().schedule(prodRunner, ImmutableList.of(Item.PLANKS, Item.NAILS), 0);
+
+	// Both wait for the queued bricks (20 minutes), then the nails go first since they're shorter.
+	assertEquals(25, schedule.getFinishMinute(1));
+	assertEquals(55, schedule.getFinishMinute(0));
+	assertEquals(55, schedule.getMakespanMinutes());
+	long storeFreeMinute = 0;
+	for (ScheduledItem item : schedule.getItems()) {
+	  if (item.getFacilityType() != ManufacturingFacility.Type.BUILDING_SUPPLY_STORE) continue;
+	  assertTrue(item.getStartMinute() >= storeFreeMinute);
+	  storeFreeMinute = item.getFinishMinute();
+	}
+  }
+}
@@ -0,0 +1,302 @@
+package ekon.simcity.algorithms;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.google.common.base.MoreObjects;
+
+import ekon.simcity.city.Position;
+
+/**
+ * State of a {@link LayoutSearch} saved to disk, so that a long search can be resumed after a
+ * restart without exploring again the subtrees it already finished.
+ *
+ * The checkpoint holds the subtrees still to be searched (the frontier), the top layouts found so
+ * far, the seed of the search and the limits and entrance of the city it searched. The seed of
+ * every subtree is kept with it, so the resumed search tries roads in the same order the original
+ * one would have.
+ *
+ * The file is written and read through a memory-mapped {@link FileChannel}, layouts in the
+ * {@link LayoutCodec} format. It's written to a temporary file first and then moved over the old
+ * checkpoint, so a crash while writing leaves the previous checkpoint intact. Reading only decodes
+ * the header: top layouts and frontier nodes are decoded from the mapped file as they're iterated,
+ * so a large frontier is never held twice in memory.
+ */
+class SearchCheckpoint {
+  private static final int MAGIC = 0x53434b50; // "SCKP"
+  private static final int VERSION = 2;
+  // magic, version, seed, nodesExpanded, city rows, city columns, entrance cell, number of top
+  // layouts, number of frontier nodes, offset of the first frontier node.
+  private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 4 + 4 + 4 + 4;
+
+  private final long seed;
+  // Types of the search's move specs, since moves are numbered by the index of their spec.
+  private final int[] moveSpecTypes;
+  private final int numRows, numColumns;
+  private final int entranceCell; // EncodedLayout.NO_ENTRANCE if the city has none.
+  private final long nodesExpanded;
+  private final Iterable<EncodedLayout> topLayouts;
+  private final int numTopLayouts;
+  private final Iterable<FrontierNode> frontier;
+  private final int numFrontierNodes;
+
+  SearchCheckpoint(long seed, int[] moveSpecTypes, Position cityLimits, Position entrance, long nodesExpanded,
+	  List<EncodedLayout> topLayouts, List<FrontierNode> frontier) {
+	this(seed, moveSpecTypes, cityLimits.getX(), cityLimits.getY(),
+		entrance == null ? EncodedLayout.NO_ENTRANCE : entrance.getX() * cityLimits.getY() + entrance.getY(),
+		nodesExpanded, topLayouts, topLayouts.size(), frontier, frontier.size());
+  }
+
+  private SearchCheckpoint(long seed, int[] moveSpecTypes, int numRows, int numColumns, int entranceCell,
+	  long nodesExpanded, Iterable<EncodedLayout> topLayouts, int numTopLayouts, Iterable<FrontierNode> frontier,
+	  int numFrontierNodes) {
+	this.seed = seed;
+	this.moveSpecTypes = moveSpecTypes;
+	this.numRows = numRows;
+	this.numColumns = numColumns;
+	this.entranceCell = entranceCell;
+	this.nodesExpanded = nodesExpanded;
+	this.topLayouts = topLayouts;
+	this.numTopLayouts = numTopLayouts;
+	this.frontier = frontier;
+	this.numFrontierNodes = numFrontierNodes;
+  }
+
+  void write(Path file) throws IOException {
+	long size = HEADER_SIZE + LayoutCodec.getVarIntSize(moveSpecTypes.length);
+	for (int type : moveSpecTypes) {
+	  size += LayoutCodec.getVarIntSize(type);
+	}
+	for (EncodedLayout layout : topLayouts) {
+	  size += LayoutCodec.getEncodedSize(layout);
+	}
+	long frontierOffset = size;
+	for (FrontierNode node : frontier) {
+	  size += node.getEncodedSize();
+	}
+	if (size > Integer.MAX_VALUE) throw new IOException("Checkpoint of " + size + " bytes is too large to map");
+
+	Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+	try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+		StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+	  MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+	  buffer.putInt(MAGIC);
+	  buffer.putInt(VERSION);
+	  buffer.putLong(seed);
+	  buffer.putLong(nodesExpanded);
+	  buffer.putInt(numRows);
+	  buffer.putInt(numColumns);
+	  buffer.putInt(entranceCell);
+	  buffer.putInt(numTopLayouts);
+	  buffer.putInt(numFrontierNodes);
+	  buffer.putInt((int) frontierOffset);
+	  LayoutCodec.writeVarInt(moveSpecTypes.length, buffer);
+	  for (int type : moveSpecTypes) {
+		LayoutCodec.writeVarInt(type, buffer);
+	  }
+	  for (EncodedLayout layout : topLayouts) {
+		LayoutCodec.write(layout, buffer);
+	  }
+	  for (FrontierNode node : frontier) {
+		node.write(buffer);
+	  }
+	  buffer.force();
+	}
+	Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  // The mapping stays valid once the channel is closed, and is read as the records are iterated.
+  static SearchCheckpoint read(Path file) throws IOException {
+	try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+	  MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+	  if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+		throw new IOException(file + " is not a search checkpoint");
+	  }
+	  int version = buffer.getInt();
+	  if (version != VERSION) throw new IOException("Unsupported checkpoint version " + version + " in " + file);
+	  long seed = buffer.getLong();
+	  long nodesExpanded = buffer.getLong();
+	  int numRows = buffer.getInt();
+	  int numColumns = buffer.getInt();
+	  int entranceCell = buffer.getInt();
+	  int numTopLayouts = buffer.getInt();
+	  int numFrontierNodes = buffer.getInt();
+	  int frontierOffset = buffer.getInt();
+	  int[] moveSpecTypes = new int[LayoutCodec.readVarInt(buffer)];
+	  for (int i = 0; i < moveSpecTypes.length; i++) {
+		moveSpecTypes[i] = LayoutCodec.readVarInt(buffer);
+	  }
+	  if (frontierOffset < buffer.position() || frontierOffset > buffer.limit()) {
+		throw new IOException(file + " is corrupt: frontier at " + frontierOffset + " of " + buffer.limit() + " bytes");
+	  }
+
+	  Iterable<EncodedLayout> topLayouts = new MappedRecords<EncodedLayout>(buffer.slice(), numTopLayouts) {
+		@Override
+		EncodedLayout read(ByteBuffer records) {
+		  return LayoutCodec.read(records);
+		}
+	  };
+	  buffer.position(frontierOffset);
+	  Iterable<FrontierNode> frontier = new MappedRecords<FrontierNode>(buffer.slice(), numFrontierNodes) {
+		@Override
+		FrontierNode read(ByteBuffer records) {
+		  return FrontierNode.read(records);
+		}
+	  };
+	  return new SearchCheckpoint(seed, moveSpecTypes, numRows, numColumns, entranceCell, nodesExpanded,
+		  topLayouts, numTopLayouts, frontier, numFrontierNodes);
+	}
+  }
+
+  long getSeed() {
+	return seed;
+  }
+
+  int[] getMoveSpecTypes() {
+	return moveSpecTypes;
+  }
+
+  Position getCityLimits() {
+	return Position.of(numRows, numColumns);
+  }
+
+  // Returns the entrance of the searched city, or null if it has none.
+  Position getEntrance() {
+	return entranceCell == EncodedLayout.NO_ENTRANCE ? null
+		: Position.of(entranceCell / numColumns, entranceCell % numColumns);
+  }
+
+  long getNodesExpanded() {
+	return nodesExpanded;
+  }
+
+  // Best first. The layouts of a checkpoint read from a file are decoded on every iteration.
+  Iterable<EncodedLayout> getTopLayouts() {
+	return topLayouts;
+  }
+
+  int getNumTopLayouts() {
+	return numTopLayouts;
+  }
+
+  // The nodes of a checkpoint read from a file are decoded on every iteration.
+  Iterable<FrontierNode> getFrontier() {
+	return frontier;
+  }
+
+  int getNumFrontierNodes() {
+	return numFrontierNodes;
+  }
+
+  @Override
+  public String toString() {
+	return MoreObjects.toStringHelper(this)
+		.add("seed", seed)
+		.add("moveSpecTypes", Arrays.toString(moveSpecTypes))
+		.add("cityLimits", getCityLimits())
+		.add("entrance", getEntrance())
+		.add("nodesExpanded", nodesExpanded)
+		.add("numTopLayouts", numTopLayouts)
+		.add("numFrontierNodes", numFrontierNodes)
+		.toString();
+  }
+
+  // Records of a checkpoint read from a file, decoded from the mapped file as they're iterated.
+  private abstract static class MappedRecords<T> implements Iterable<T> {
+	private final ByteBuffer buffer; // starts at the first record
+	private final int numRecords;
+
+	MappedRecords(ByteBuffer buffer, int numRecords) {
+	  this.buffer = buffer;
+	  this.numRecords = numRecords;
+	}
+
+	abstract T read(ByteBuffer records);
+
+	@Override
+	public Iterator<T> iterator() {
+	  final ByteBuffer records = buffer.duplicate();
+	  return new Iterator<T>() {
+		private int numRead;
+
+		@Override
+		public boolean hasNext() {
+		  return numRead < numRecords;
+		}
+
+		@Override
+		public T next() {
+		  if (!hasNext()) throw new NoSuchElementException();
+		  numRead++;
+		  return read(records);
+		}
+
+		@Override
+		public void remove() {
+		  throw new UnsupportedOperationException();
+		}
+	  };
+	}
+  }
+
+  /** Root of a subtree that's still to be searched. */
+  static class FrontierNode {
+	private final EncodedLayout layout;
+	private final int[] excludedMoves; // sorted
+	private final long seed;
+	private final int depth;
+
+	FrontierNode(EncodedLayout layout, int[] excludedMoves, long seed, int depth) {
+	  this.layout = layout;
+	  this.excludedMoves = excludedMoves;
+	  this.seed = seed;
+	  this.depth = depth;
+	}
+
+	EncodedLayout getLayout() {
+	  return layout;
+	}
+
+	int[] getExcludedMoves() {
+	  return excludedMoves;
+	}
+
+	long getSeed() {
+	  return seed;
+	}
+
+	int getDepth() {
+	  return depth;
+	}
+
+	private int getEncodedSize() {
+	  return LayoutCodec.getEncodedSize(layout) + LayoutCodec.getSortedIntsSize(excludedMoves) + 8
+		  + LayoutCodec.getVarIntSize(depth);
+	}
+
+	private void write(ByteBuffer buffer) {
+	  LayoutCodec.write(layout, buffer);
+	  LayoutCodec.writeSortedInts(excludedMoves, buffer);
+	  buffer.putLong(seed);
+	  LayoutCodec.writeVarInt(depth, buffer);
+	}
+
+	private static FrontierNode read(ByteBuffer buffer) {
+	  EncodedLayout layout = LayoutCodec.read(buffer);
+	  int[] excludedMoves = LayoutCodec.readSortedInts(buffer);
+	  long seed = buffer.getLong();
+	  int depth = LayoutCodec.readVarInt(buffer);
+	  return new FrontierNode(layout, excludedMoves, seed, depth);
+	}
+  }
+}
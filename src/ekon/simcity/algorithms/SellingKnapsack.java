@@ -0,0 +1,227 @@
+package ekon.simcity.algorithms;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ekon.simcity.city.BillOfMaterials;
+import ekon.simcity.city.Item;
+import ekon.simcity.city.ManufacturingFacility;
+
+/**
+ * Chooses how many of each item to make for selling, so that they fit in the free slots of the
+ * manufacturing facilities with the highest total selling price.
+ *
+ * Every item is made from raw materials, so one item takes a fixed number of slots of each
+ * facility type from the {@link BillOfMaterials}. Optionally, the minutes of production each
+ * facility type has left can be limited too, since a {@link ekon.simcity.city.Store} makes one item
+ * at a time. That makes this a knapsack with one dimension per facility type, or two if minutes are
+ * limited, which is solved exactly with a depth-first branch and bound.
+ *
+ * Items are tried in decreasing order of price per slot, most units first, so good solutions are
+ * found early. A subtree is cut when the LP relaxation of a single constraint, either the total
+ * number of free slots or the slots or minutes of one type that all remaining items need, shows it
+ * can't beat the best solution so far.
+ *
+ * The search starts from the greedy solution, the most expensive items first, and returns the best
+ * solution found so far when it runs out of time, so it's never worse than the greedy one.
+ *
+ * Note: not thread-safe.
+ */
+class SellingKnapsack {
+  private static final Item[] ITEMS = Item.values();
+  private static final ManufacturingFacility.Type[] FACILITY_TYPES = ManufacturingFacility.Type.values();
+  private static final int NUM_FACILITY_TYPES = FACILITY_TYPES.length;
+  // Nodes expanded between looks at the clock.
+  private static final int NODES_PER_DEADLINE_CHECK = 1024;
+  // Slack for rounding errors in the bounds, which are fractional.
+  private static final double EPSILON = 1e-9;
+
+  // Resources are the slots of each facility type, by type ordinal, followed by the minutes of each
+  // facility type if those are limited.
+  private final int numResources;
+  private final int[] available;
+  private int totalFreeSlots;
+
+  // Candidate items, by decreasing price per slot, and their prices and resource demands.
+  private final Item[] items;
+  private final int[] prices;
+  private final int[][] demand; // [item][resource]
+  // Highest price per slot of the items from each index on, and per unit of each resource. A
+  // resource that one of those items doesn't need has no bound.
+  private final double[] maxPricePerSlot;
+  private final double[][] maxPricePerUnit;
+
+  private final long timeBudgetMillis;
+  private long deadline;
+  private long nodesExpanded;
+  private boolean isOutOfTime;
+
+  private final int[] counts;
+  private final int[] bestCounts;
+  private long bestValue;
+
+  /**
+   * @param unlockedItems items that can be made
+   * @param freeSlots free slots by facility type ordinal, left unchanged
+   * @param freeMinutes minutes of production left by facility type ordinal, left unchanged, or null
+   *     if only slots are limited
+   * @param timeBudgetMillis wall-clock time after which the best solution found so far is returned
+   */
+  SellingKnapsack(Collection<Item> unlockedItems, int[] freeSlots, int[] freeMinutes, long timeBudgetMillis) {
+	numResources = freeMinutes == null ? NUM_FACILITY_TYPES : 2 * NUM_FACILITY_TYPES;
+	available = new int[numResources];
+	System.arraycopy(freeSlots, 0, available, 0, NUM_FACILITY_TYPES);
+	if (freeMinutes != null) System.arraycopy(freeMinutes, 0, available, NUM_FACILITY_TYPES, NUM_FACILITY_TYPES);
+	for (int slots : freeSlots) {
+	  totalFreeSlots += slots;
+	}
+	this.timeBudgetMillis = timeBudgetMillis;
+
+	// Items that sell for nothing or never fit can be left out.
+	List<Item> candidates = new ArrayList<>();
+	for (Item item : unlockedItems) {
+	  if (item.getMaxSellingPrice() > 0 && fits(item)) candidates.add(item);
+	}
+	candidates.sort(new PricePerSlotComparator().reversed());
+	items = candidates.toArray(new Item[candidates.size()]);
+
+	int n = items.length;
+	prices = new int[n];
+	demand = new int[n][numResources];
+	maxPricePerSlot = new double[n + 1];
+	maxPricePerUnit = new double[n + 1][numResources];
+	for (int i = n - 1; i >= 0; i--) {
+	  prices[i] = items[i].getMaxSellingPrice();
+	  for (int r = 0; r < numResources; r++) {
+		demand[i][r] = getDemand(items[i], r);
+		maxPricePerUnit[i][r] = demand[i][r] == 0 ? Double.POSITIVE_INFINITY
+			: Math.max(maxPricePerUnit[i + 1][r], (double) prices[i] / demand[i][r]);
+	  }
+	  maxPricePerSlot[i] = Math.max(maxPricePerSlot[i + 1], getPricePerSlot(items[i]));
+	}
+	counts = new int[n];
+	bestCounts = new int[n];
+  }
+
+  /**
+   * Returns how many of each item to make, by item ordinal. The result is optimal unless the time
+   * budget ran out.
+   */
+  int[] solve() {
+	deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+	useGreedySolution();
+	search(0, 0);
+
+	int[] itemCounts = new int[ITEMS.length];
+	for (int i = 0; i < items.length; i++) {
+	  itemCounts[items[i].ordinal()] = bestCounts[i];
+	}
+	return itemCounts;
+  }
+
+  // Makes as many as fit of the most expensive item, then of the next most expensive one and so on.
+  private void useGreedySolution() {
+	boolean[] used = new boolean[items.length];
+	for (int k = 0; k < items.length; k++) {
+	  int mostExpensive = -1;
+	  for (int i = 0; i < items.length; i++) {
+		if (!used[i] && (mostExpensive < 0 || prices[i] > prices[mostExpensive])) mostExpensive = i;
+	  }
+	  used[mostExpensive] = true;
+	  bestCounts[mostExpensive] = getMaxCount(mostExpensive);
+	  take(mostExpensive, bestCounts[mostExpensive]);
+	  bestValue += (long) bestCounts[mostExpensive] * prices[mostExpensive];
+	}
+	for (int i = 0; i < items.length; i++) {
+	  take(i, -bestCounts[i]);
+	}
+  }
+
+  // Tries every number of units of item i, given the value of the units of items before it.
+  private void search(int i, long value) {
+	if (value > bestValue) {
+	  bestValue = value;
+	  System.arraycopy(counts, 0, bestCounts, 0, counts.length);
+	}
+	if (i == items.length || isOutOfTime) return;
+	if (++nodesExpanded % NODES_PER_DEADLINE_CHECK == 0 && System.nanoTime() > deadline) {
+	  isOutOfTime = true;
+	  return;
+	}
+	if (value + getUpperBound(i) <= bestValue) return;
+
+	// Take as many as fit and give them back one at a time.
+	int count = getMaxCount(i);
+	take(i, count);
+	while (true) {
+	  counts[i] = count;
+	  search(i + 1, value + (long) count * prices[i]);
+	  if (count == 0 || isOutOfTime) break;
+	  take(i, -1);
+	  count--;
+	}
+	take(i, -count);
+	counts[i] = 0;
+  }
+
+  // Upper bound on the value the items from i on can add with the resources left.
+  private long getUpperBound(int i) {
+	double bound = totalFreeSlots * maxPricePerSlot[i];
+	for (int r = 0; r < numResources; r++) {
+	  if (maxPricePerUnit[i][r] != Double.POSITIVE_INFINITY) {
+		bound = Math.min(bound, available[r] * maxPricePerUnit[i][r]);
+	  }
+	}
+	return (long) (bound + EPSILON);
+  }
+
+  private int getMaxCount(int i) {
+	int maxCount = Integer.MAX_VALUE;
+	for (int r = 0; r < numResources; r++) {
+	  if (demand[i][r] > 0) maxCount = Math.min(maxCount, available[r] / demand[i][r]);
+	}
+	return maxCount;
+  }
+
+  private boolean fits(Item item) {
+	for (int r = 0; r < numResources; r++) {
+	  if (getDemand(item, r) > available[r]) return false;
+	}
+	return true;
+  }
+
+  private static int getDemand(Item item, int resource) {
+	return resource < NUM_FACILITY_TYPES
+		? BillOfMaterials.getSlotDemand(item, FACILITY_TYPES[resource])
+		: BillOfMaterials.getMinutesDemand(item, FACILITY_TYPES[resource - NUM_FACILITY_TYPES]);
+  }
+
+  // Takes the resources for the given number of units of item i, or gives them back if negative.
+  private void take(int i, int count) {
+	for (int r = 0; r < numResources; r++) {
+	  available[r] -= count * demand[i][r];
+	}
+	for (int t = 0; t < NUM_FACILITY_TYPES; t++) {
+	  totalFreeSlots -= count * demand[i][t];
+	}
+  }
+
+  private static double getPricePerSlot(Item item) {
+	int slots = 0;
+	for (ManufacturingFacility.Type type : FACILITY_TYPES) {
+	  slots += BillOfMaterials.getSlotDemand(item, type);
+	}
+	return (double) item.getMaxSellingPrice() / slots;
+  }
+
+  // Orders items by increasing price per slot they take, ingredients included.
+  private static class PricePerSlotComparator implements Comparator<Item> {
+	@Override
+	public int compare(Item i1, Item i2) {
+	  return Double.compare(getPricePerSlot(i1), getPricePerSlot(i2));
+	}
+  }
+}
@@ -0,0 +1,113 @@
+package ekon.simcity.algorithms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import ekon.simcity.city.City;
+
+/**
+ * Keeps the k highest scoring layouts found by a search, in a fixed amount of memory.
+ *
+ * Layouts are kept encoded (see {@link EncodedLayout}) in a min-heap on score, so the worst kept
+ * layout is the one replaced. Once the heap is full, layouts that don't beat the worst kept score
+ * are rejected without taking the lock or encoding the city. Every layout that beats the best
+ * score so far is also streamed to a {@link LayoutSink}.
+ */
+class TopLayouts {
+  private final int capacity;
+  private final LayoutSink sink;
+  private final EncodedLayout[] heap; // guarded by this
+  private int size; // guarded by this
+  // Score a layout needs to beat to be kept: the worst kept score once the heap is full.
+  private volatile long minScoreToKeep = Long.MIN_VALUE;
+  private long bestScore = Long.MIN_VALUE; // guarded by this
+
+  TopLayouts(int capacity, LayoutSink sink) {
+	if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive, was " + capacity);
+	this.capacity = capacity;
+	this.sink = sink;
+	this.heap = new EncodedLayout[capacity];
+  }
+
+  /** Offers a layout with the given score. Returns true if it was kept. */
+  boolean offer(City city, long score) {
+	if (score <= minScoreToKeep) return false;
+	return offer(EncodedLayout.of(city, score));
+  }
+
+  synchronized boolean offer(EncodedLayout layout) {
+	long score = layout.getScore();
+	if (size == capacity && score <= heap[0].getScore()) return false;
+	for (int i = 0; i < size; i++) {
+	  if (heap[i].isSameLayout(layout)) return false;
+	}
+
+	if (size < capacity) {
+	  heap[size] = layout;
+	  siftUp(size++);
+	} else {
+	  heap[0] = layout;
+	  siftDown(0);
+	}
+	if (size == capacity) minScoreToKeep = heap[0].getScore();
+	if (score > bestScore) {
+	  bestScore = score;
+	  sink.accept(layout);
+	}
+	return true;
+  }
+
+  /** Returns the score a layout needs to beat to be kept, or Long.MIN_VALUE until k layouts are kept. */
+  long getMinScoreToKeep() {
+	return minScoreToKeep;
+  }
+
+  /** Returns the kept layouts, best first. */
+  synchronized List<EncodedLayout> getLayouts() {
+	List<EncodedLayout> layouts = new ArrayList<>(size);
+	for (int i = 0; i < size; i++) {
+	  layouts.add(heap[i]);
+	}
+	Collections.sort(layouts, new ScoreComparator());
+	return layouts;
+  }
+
+  /** Returns the best kept layout, or null if none was kept. */
+  synchronized EncodedLayout getBest() {
+	List<EncodedLayout> layouts = getLayouts();
+	return layouts.isEmpty() ? null : layouts.get(0);
+  }
+
+  private void siftUp(int index) {
+	EncodedLayout layout = heap[index];
+	while (index > 0) {
+	  int parent = (index - 1) / 2;
+	  if (heap[parent].getScore() <= layout.getScore()) break;
+	  heap[index] = heap[parent];
+	  index = parent;
+	}
+	heap[index] = layout;
+  }
+
+  private void siftDown(int index) {
+	EncodedLayout layout = heap[index];
+	while (2 * index + 1 < size) {
+	  int child = 2 * index + 1;
+	  if (child + 1 < size && heap[child + 1].getScore() < heap[child].getScore()) child++;
+	  if (layout.getScore() <= heap[child].getScore()) break;
+	  heap[index] = heap[child];
+	  index = child;
+	}
+	heap[index] = layout;
+  }
+
+  // Sorts layouts from highest to lowest score.
+  private static class ScoreComparator implements Comparator<EncodedLayout> {
+	@Override
+	public int compare(EncodedLayout a, EncodedLayout b) {
+	  return Long.compare(b.getScore(), a.getScore());
+	}
+  }
+}
@@ -0,0 +1,114 @@
+package ekon.simcity.city;
+
+import java.util.Map;
+
+/**
+ * Everything that goes into making one of each {@link Item}, flattened out of the recipes once so
+ * that it can be looked up without walking the ingredients recursively.
+ *
+ * Tables are int arrays indexed by item ordinal (and facility type ordinal), computed when the
+ * class is loaded and never changed. An item's ingredients always come before it in {@link Item},
+ * so every table is filled in a single pass in ordinal order.
+ */
+public class BillOfMaterials {
+  private static final Item[] ITEMS = Item.values();
+  private static final int NUM_ITEMS = ITEMS.length;
+  private static final int NUM_FACILITY_TYPES = ManufacturingFacility.Type.values().length;
+
+  // Direct ingredients of each item and how many of each it takes.
+  private static final int[][] INGREDIENTS = new int[NUM_ITEMS][];
+  private static final int[][] INGREDIENT_QUANTITIES = new int[NUM_ITEMS][];
+  // Number of each item made to make one item from raw materials, including the item itself.
+  private static final int[][] TOTAL_QUANTITIES = new int[NUM_ITEMS][NUM_ITEMS];
+  // Number of slots of each facility type taken to make one item from raw materials.
+  private static final int[][] SLOT_DEMAND = new int[NUM_ITEMS][NUM_FACILITY_TYPES];
+  // Minutes of production in each facility type to make one item from raw materials.
+  private static final int[][] MINUTES_DEMAND = new int[NUM_ITEMS][NUM_FACILITY_TYPES];
+  // Minutes to make one item if all ingredients are made in parallel, as soon as possible.
+  private static final int[] CRITICAL_PATH_MINUTES = new int[NUM_ITEMS];
+
+  static {
+	for (Item item : ITEMS) {
+	  int o = item.ordinal();
+	  Map<Item, Integer> ingredients = item.getRequiredIngredients();
+	  INGREDIENTS[o] = new int[ingredients.size()];
+	  INGREDIENT_QUANTITIES[o] = new int[ingredients.size()];
+	  int i = 0;
+	  int slowestIngredientMinutes = 0;
+	  TOTAL_QUANTITIES[o][o] = 1;
+	  for (Map.Entry<Item, Integer> ingredient : ingredients.entrySet()) {
+		int ingredientOrdinal = ingredient.getKey().ordinal();
+		if (ingredientOrdinal >= o) {
+		  throw new IllegalStateException("Ingredient " + ingredient.getKey() + " must be declared before " + item);
+		}
+		INGREDIENTS[o][i] = ingredientOrdinal;
+		INGREDIENT_QUANTITIES[o][i] = ingredient.getValue();
+		i++;
+		for (int j = 0; j < NUM_ITEMS; j++) {
+		  TOTAL_QUANTITIES[o][j] += ingredient.getValue() * TOTAL_QUANTITIES[ingredientOrdinal][j];
+		}
+		slowestIngredientMinutes = Math.max(slowestIngredientMinutes, CRITICAL_PATH_MINUTES[ingredientOrdinal]);
+	  }
+	  for (int j = 0; j < NUM_ITEMS; j++) {
+		SLOT_DEMAND[o][ITEMS[j].getManufacturingFacilityType().ordinal()] += TOTAL_QUANTITIES[o][j];
+		MINUTES_DEMAND[o][ITEMS[j].getManufacturingFacilityType().ordinal()] +=
+			TOTAL_QUANTITIES[o][j] * ITEMS[j].getMinutesToMake();
+	  }
+	  CRITICAL_PATH_MINUTES[o] = slowestIngredientMinutes + item.getMinutesToMake();
+	}
+  }
+
+  private BillOfMaterials() {}
+
+  public static int getNumIngredients(Item item) {
+	return INGREDIENTS[item.ordinal()].length;
+  }
+
+  // Returns the ordinal of the i-th direct ingredient of the item.
+  public static int getIngredient(Item item, int i) {
+	return INGREDIENTS[item.ordinal()][i];
+  }
+
+  // Returns how many of the i-th direct ingredient one item takes.
+  public static int getIngredientQuantity(Item item, int i) {
+	return INGREDIENT_QUANTITIES[item.ordinal()][i];
+  }
+
+  /**
+   * Returns how many of the given item, directly or not, go into making one item from raw
+   * materials. An item counts itself once.
+   */
+  public static int getTotalQuantity(Item item, Item ingredient) {
+	return TOTAL_QUANTITIES[item.ordinal()][ingredient.ordinal()];
+  }
+
+  /** Returns how many of the given raw material go into making one item, 0 if it isn't raw. */
+  public static int getRawMaterialCount(Item item, Item rawMaterial) {
+	return isRawMaterial(rawMaterial) ? getTotalQuantity(item, rawMaterial) : 0;
+  }
+
+  public static boolean isRawMaterial(Item item) {
+	return INGREDIENTS[item.ordinal()].length == 0;
+  }
+
+  /** Returns how many slots of the given facility type it takes to make one item from raw materials. */
+  public static int getSlotDemand(Item item, ManufacturingFacility.Type type) {
+	return SLOT_DEMAND[item.ordinal()][type.ordinal()];
+  }
+
+  /**
+   * Returns the minutes of production in the given facility type it takes to make one item from raw
+   * materials, which is how long the facility is busy with it if it makes one item at a time.
+   */
+  public static int getMinutesDemand(Item item, ManufacturingFacility.Type type) {
+	return MINUTES_DEMAND[item.ordinal()][type.ordinal()];
+  }
+
+  /**
+   * Returns the minutes it takes to make one item from raw materials, if every ingredient is
+   * started as soon as possible and gets a slot of its own.
+   */
+  public static int getCriticalPathMinutes(Item item) {
+	return CRITICAL_PATH_MINUTES[item.ordinal()];
+  }
+}
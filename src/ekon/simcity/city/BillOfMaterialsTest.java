@@ -0,0 +1,48 @@
+package ekon.simcity.city;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BillOfMaterialsTest {
+
+  /** Verify that quantities are multiplied down the recipes and summed across ingredients. */
+  @Test
+  public void testGetTotalQuantity() {
+	// CHAIR takes 2 WOOD, 1 NAILS (2 METAL) and 1 HAMMER (1 METAL, 1 WOOD).
+	assertEquals(1, BillOfMaterials.getTotalQuantity(Item.CHAIR, Item.CHAIR));
+	assertEquals(3, BillOfMaterials.getTotalQuantity(Item.CHAIR, Item.WOOD));
+	assertEquals(3, BillOfMaterials.getTotalQuantity(Item.CHAIR, Item.METAL));
+	assertEquals(1, BillOfMaterials.getTotalQuantity(Item.CHAIR, Item.NAILS));
+	assertEquals(0, BillOfMaterials.getTotalQuantity(Item.CHAIR, Item.PLASTIC));
+
+	assertEquals(3, BillOfMaterials.getRawMaterialCount(Item.CHAIR, Item.METAL));
+	assertEquals(0, BillOfMaterials.getRawMaterialCount(Item.CHAIR, Item.NAILS));
+	assertTrue(BillOfMaterials.isRawMaterial(Item.METAL));
+  }
+
+  @Test
+  public void testGetSlotDemand() {
+	assertEquals(6, BillOfMaterials.getSlotDemand(Item.CHAIR, ManufacturingFacility.Type.FACTORY));
+	assertEquals(1, BillOfMaterials.getSlotDemand(Item.CHAIR, ManufacturingFacility.Type.BUILDING_SUPPLY_STORE));
+	assertEquals(1, BillOfMaterials.getSlotDemand(Item.CHAIR, ManufacturingFacility.Type.HARDWARE_STORE));
+	assertEquals(1, BillOfMaterials.getSlotDemand(Item.CHAIR, ManufacturingFacility.Type.FURNITURE_STORE));
+	assertEquals(0, BillOfMaterials.getSlotDemand(Item.CHAIR, ManufacturingFacility.Type.DONUT_SHOP));
+  }
+
+  @Test
+  public void testGetMinutesDemand() {
+	assertEquals(3 * 3 + 3 * 1, BillOfMaterials.getMinutesDemand(Item.CHAIR, ManufacturingFacility.Type.FACTORY));
+	assertEquals(5, BillOfMaterials.getMinutesDemand(Item.CHAIR, ManufacturingFacility.Type.BUILDING_SUPPLY_STORE));
+	assertEquals(20, BillOfMaterials.getMinutesDemand(Item.CHAIR, ManufacturingFacility.Type.FURNITURE_STORE));
+  }
+
+  /** Verify that ingredients are assumed to be made in parallel, so only the slowest one counts. */
+  @Test
+  public void testGetCriticalPathMinutes() {
+	assertEquals(1, BillOfMaterials.getCriticalPathMinutes(Item.METAL));
+	assertEquals(14 + 3, BillOfMaterials.getCriticalPathMinutes(Item.HAMMER)); // WOOD is slower than METAL
+	assertEquals(20 + 14 + 3, BillOfMaterials.getCriticalPathMinutes(Item.CHAIR)); // through HAMMER
+  }
+}
@@ -0,0 +1,145 @@
+package ekon.simcity.city;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size grid of bits, packed into longs row by row.
+ *
+ * Each row starts on a fresh word so that a horizontal run of cells in a row can be tested with
+ * a handful of masked word operations (one per 64 columns) instead of a lookup per cell.
+ *
+ * Note: not thread-safe.
+ */
+class BitGrid {
+  private final int numRows, numColumns, wordsPerRow;
+  private final long[] words;
+
+  BitGrid(int numRows, int numColumns) {
+	this.numRows = numRows;
+	this.numColumns = numColumns;
+	this.wordsPerRow = (numColumns + 63) >>> 6;
+	this.words = new long[numRows * wordsPerRow];
+  }
+
+  int getNumRows() {
+	return numRows;
+  }
+
+  int getNumColumns() {
+	return numColumns;
+  }
+
+  boolean isInside(int row, int column) {
+	return row >= 0 && row < numRows && column >= 0 && column < numColumns;
+  }
+
+  /** Returns the bit at the given cell. Cells outside of the grid are always unset. */
+  boolean get(int row, int column) {
+	if (!isInside(row, column)) return false;
+	return (words[row * wordsPerRow + (column >>> 6)] & (1L << column)) != 0;
+  }
+
+  void set(int row, int column) {
+	words[row * wordsPerRow + (column >>> 6)] |= 1L << column;
+  }
+
+  void clear(int row, int column) {
+	words[row * wordsPerRow + (column >>> 6)] &= ~(1L << column);
+  }
+
+  /** Sets every bit in the rectangle [fromRow, toRow] x [fromColumn, toColumn] (inclusive). */
+  void setRectangle(int fromRow, int toRow, int fromColumn, int toColumn) {
+	for (int row = fromRow; row <= toRow; row++) {
+	  int base = row * wordsPerRow;
+	  int firstWord = fromColumn >>> 6, lastWord = toColumn >>> 6;
+	  for (int word = firstWord; word <= lastWord; word++) {
+		words[base + word] |= mask(word, firstWord, lastWord, fromColumn, toColumn);
+	  }
+	}
+  }
+
+  /** Clears every bit in the rectangle [fromRow, toRow] x [fromColumn, toColumn] (inclusive). */
+  void clearRectangle(int fromRow, int toRow, int fromColumn, int toColumn) {
+	for (int row = fromRow; row <= toRow; row++) {
+	  int base = row * wordsPerRow;
+	  int firstWord = fromColumn >>> 6, lastWord = toColumn >>> 6;
+	  for (int word = firstWord; word <= lastWord; word++) {
+		words[base + word] &= ~mask(word, firstWord, lastWord, fromColumn, toColumn);
+	  }
+	}
+  }
+
+  /** True if any bit in the given row between fromColumn and toColumn (inclusive) is set. */
+  boolean isAnySetInRow(int row, int fromColumn, int toColumn) {
+	int base = row * wordsPerRow;
+	int firstWord = fromColumn >>> 6, lastWord = toColumn >>> 6;
+	for (int word = firstWord; word <= lastWord; word++) {
+	  if ((words[base + word] & mask(word, firstWord, lastWord, fromColumn, toColumn)) != 0) return true;
+	}
+	return false;
+  }
+
+  /**
+   * True if every bit in the given row between fromColumn and toColumn (inclusive) is set.
+   * Runs that leave the grid are never fully set.
+   */
+  boolean isAllSetInRow(int row, int fromColumn, int toColumn) {
+	if (row < 0 || row >= numRows || fromColumn < 0 || toColumn >= numColumns) return false;
+	int base = row * wordsPerRow;
+	int firstWord = fromColumn >>> 6, lastWord = toColumn >>> 6;
+	for (int word = firstWord; word <= lastWord; word++) {
+	  long mask = mask(word, firstWord, lastWord, fromColumn, toColumn);
+	  if ((words[base + word] & mask) != mask) return false;
+	}
+	return true;
+  }
+
+  /** True if any bit in the rectangle [fromRow, toRow] x [fromColumn, toColumn] (inclusive) is set. */
+  boolean isAnySetInRectangle(int fromRow, int toRow, int fromColumn, int toColumn) {
+	for (int row = fromRow; row <= toRow; row++) {
+	  if (isAnySetInRow(row, fromColumn, toColumn)) return true;
+	}
+	return false;
+  }
+
+  /** Returns the number of set bits in the rectangle [fromRow, toRow] x [fromColumn, toColumn] (inclusive). */
+  int countInRectangle(int fromRow, int toRow, int fromColumn, int toColumn) {
+	int count = 0;
+	for (int row = fromRow; row <= toRow; row++) {
+	  int base = row * wordsPerRow;
+	  int firstWord = fromColumn >>> 6, lastWord = toColumn >>> 6;
+	  for (int word = firstWord; word <= lastWord; word++) {
+		count += Long.bitCount(words[base + word] & mask(word, firstWord, lastWord, fromColumn, toColumn));
+	  }
+	}
+	return count;
+  }
+
+  // Returns the index (row * numColumns + column) of the first set cell at or
+  // after the given index in row-major order, or -1 if there is none.
+  int nextSetCell(int cellIndex) {
+	int row = cellIndex / numColumns;
+	int column = cellIndex % numColumns;
+	for (; row < numRows; row++, column = 0) {
+	  int base = row * wordsPerRow;
+	  for (int word = column >>> 6; word < wordsPerRow; word++) {
+		long bits = words[base + word];
+		if (word == column >>> 6) bits &= -1L << (column & 63);
+		if (bits != 0) return row * numColumns + (word << 6) + Long.numberOfTrailingZeros(bits);
+	  }
+	}
+	return -1;
+  }
+
+  void clearAll() {
+	Arrays.fill(words, 0L);
+  }
+
+  // Mask of the bits of the given word that fall between fromColumn and toColumn (inclusive).
+  private static long mask(int word, int firstWord, int lastWord, int fromColumn, int toColumn) {
+	long mask = -1L;
+	if (word == firstWord) mask &= -1L << (fromColumn & 63);
+	if (word == lastWord) mask &= -1L >>> (63 - (toColumn & 63));
+	return mask;
+  }
+}
@@ -1,83 +1,542 @@
 package ekon.simcity.city;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Sets;
+import ekon.simcity.metrics.EnumCounter;
+import ekon.simcity.metrics.LatencyHistogram;
+import ekon.simcity.metrics.Metrics;
 
 public class City {
   // TODO: add more required services.
   private static final List<ElementType> REQUIRED_SERVICE_TYPES =
 	  Arrays.asList(ElementType.FIRE_STATION, ElementType.POLICE_STATION);
+  private static final EnumCounter<ElementConstraint> CONSTRAINT_CHECKS =
+	  Metrics.newEnumCounter("city.constraintChecks", ElementConstraint.class);
+  // Time spent keeping the constraint status up to date on every add and remove.
+  private static final LatencyHistogram VERIFY_LATENCY = Metrics.newLatencyHistogram("city.verifyNanos");
 
   private final Position cityLimits;
-  private final Multimap<ElementType, GridElement> gridElementsByType;
-  private final Multimap<Position, GridElement> gridElementsByPosition;
+  private final Map<ElementType, List<GridElement>> gridElementsByType;
+  private int[] typeListIndexById; // index of each element in its gridElementsByType list.
+  // Shared Position for every cell, created on first use. See getPosition.
+  private final Position[] positions;
+  private final OccupancyGrid occupancy;
+  private final RoadIndex roads;
+  // Cell where roads enter the city, or null if roads don't need to be connected to anything.
+  private final Position entrance;
+  private final RoadNetwork roadNetwork; // null if there is no entrance.
+  private final Map<ElementType, CoverageGrid> coverageByServiceType;
+  private final PlacementIndex freeSpace;
   private final ConstraintVerifier verifier;
+  private final PlacementFinder placementFinder;
+  private final Scorer scorer;
+  private PlacementHeuristic placementHeuristic;
+
+  // Undo journal: the elements added and removed since the trail was started,
+  // in order, so that undoTo can revert them. See mark().
+  private GridElement[] trailElements;
+  private boolean[] trailWasAdd;
+  private int trailSize;
+  private boolean isTrailing;
 
   public City(Position cityLimits) {
+	this(cityLimits, null);
+  }
+
+  // A city whose roads must all be connected to the road at the given entrance
+  // cell (see ElementConstraint.CONNECTED_TO_ENTRANCE). The road at the
+  // entrance itself doesn't need another road next to it.
+  public City(Position cityLimits, Position entrance) {
+	if (entrance != null && (entrance.getX() < 0 || entrance.getY() < 0
+		|| entrance.getX() >= cityLimits.getX() || entrance.getY() >= cityLimits.getY())) {
+	  throw new IllegalArgumentException("Entrance " + entrance + " is outside of city limits " + cityLimits);
+	}
 	this.cityLimits = cityLimits;
-	this.gridElementsByType = ArrayListMultimap.create();
-	this.gridElementsByPosition = ArrayListMultimap.create();
+	this.entrance = entrance;
+	this.roadNetwork = entrance == null ? null : new RoadNetwork(cityLimits.getX(), cityLimits.getY());
+	this.gridElementsByType = new EnumMap<>(ElementType.class);
+	for (ElementType type : ElementType.values()) {
+	  gridElementsByType.put(type, new ArrayList<GridElement>());
+	}
+	this.typeListIndexById = new int[16];
+	this.positions = new Position[cityLimits.getX() * cityLimits.getY()];
+	this.occupancy = new OccupancyGrid(cityLimits.getX(), cityLimits.getY());
+	this.roads = new RoadIndex(cityLimits.getX(), cityLimits.getY());
+	this.coverageByServiceType = new EnumMap<>(ElementType.class);
+	this.freeSpace = new PlacementIndex(cityLimits.getX(), cityLimits.getY());
 	this.verifier = new ConstraintVerifier();
+	this.placementFinder = new PlacementFinder();
+	this.scorer = new Scorer();
+	this.placementHeuristic = new PlacementHeuristic.MostContact();
   }
 
   public void add(GridElement element) {
 	Position position = element.getPosition();
-	if (gridElementsByPosition.containsKey(position)) {
-	  throw new IllegalStateException(
-		"\nThere is an existing element at that position: " + gridElementsByPosition.get(position));
+	int x = position.getX();
+	int y = position.getY();
+	ElementSpec spec = element.getSpec();
+	if (!occupancy.isInside(x, y, spec.getHeight(), spec.getWidth())) {
+	  throw new IllegalArgumentException("Element " + element + " is outside of city limits " + cityLimits);
+	}
+	if (!occupancy.isFree(x, y, spec.getHeight(), spec.getWidth())) {
+	  throw new IllegalStateException("\nThere is an existing element at that position: "
+		  + occupancy.findOverlappingElement(x, y, spec.getHeight(), spec.getWidth()));
 	}
-	gridElementsByType.put(element.getSpec().getType(), element);
-	gridElementsByPosition.put(element.getPosition(), element);
+	addElement(element);
   }
 
   public void remove(GridElement element) {
 	Position position = element.getPosition();
-	if (!gridElementsByPosition.containsEntry(position, element)) {
+	int id = occupancy.getElementId(position.getX(), position.getY());
+	if (id == OccupancyGrid.EMPTY || !occupancy.getElement(id).equals(element)) {
 	  StringBuilder error = new StringBuilder("Trying to remove element that's not in the city: ").append(element);
-	  if (gridElementsByType.containsKey(position)) {
-		error.append("\nThere is an existing element at that position: ").append(gridElementsByPosition.get(position));
+	  if (id != OccupancyGrid.EMPTY) {
+		error.append("\nThere is an existing element at that position: ").append(occupancy.getElement(id));
 	  }
 	  throw new IllegalStateException(error.toString());
 	}
-	gridElementsByType.remove(element.getSpec().getType(), element);
-	gridElementsByPosition.remove(position, element);
+	removeElement(id);
+  }
+
+  // Adds an element that's known to fit and updates all the indexes.
+  private void addElement(GridElement element) {
+	ElementSpec spec = element.getSpec();
+	int x = element.getPosition().getX();
+	int y = element.getPosition().getY();
+	int id = occupancy.occupy(element);
+	if (id >= typeListIndexById.length) {
+	  typeListIndexById = Arrays.copyOf(typeListIndexById, Math.max(id + 1, typeListIndexById.length * 2));
+	}
+	List<GridElement> elementsOfType = gridElementsByType.get(spec.getType());
+	typeListIndexById[id] = elementsOfType.size();
+	elementsOfType.add(element);
+	freeSpace.occupy(x, y, spec.getHeight(), spec.getWidth());
+	if (spec.getType() == ElementType.ROAD) {
+	  roads.add(element);
+	  if (roadNetwork != null) roadNetwork.add(element);
+	}
+	if (spec instanceof ServiceSpec) getCoverage(spec.getType()).add(element);
+	scorer.elementAdded(element);
+	long verifyStart = Metrics.ENABLED ? System.nanoTime() : 0;
+	verifier.elementAdded(id);
+	if (Metrics.ENABLED) VERIFY_LATENCY.recordSince(verifyStart);
+	record(element, true);
+  }
+
+  // Removes the element with the given id and updates all the indexes.
+  private void removeElement(int id) {
+	GridElement element = occupancy.getElement(id);
+	ElementSpec spec = element.getSpec();
+	int x = element.getPosition().getX();
+	int y = element.getPosition().getY();
+	long verifyStart = Metrics.ENABLED ? System.nanoTime() : 0;
+	verifier.elementRemoving(id);
+	long verifyNanos = Metrics.ENABLED ? System.nanoTime() - verifyStart : 0;
+
+	// Swap the last element of the same type into the removed element's spot.
+	List<GridElement> elementsOfType = gridElementsByType.get(spec.getType());
+	GridElement last = elementsOfType.remove(elementsOfType.size() - 1);
+	if (last != element) {
+	  int index = typeListIndexById[id];
+	  elementsOfType.set(index, last);
+	  typeListIndexById[occupancy.getElementId(last.getPosition().getX(), last.getPosition().getY())] = index;
+	}
+
+	occupancy.release(id);
+	freeSpace.release(x, y, spec.getHeight(), spec.getWidth());
+	if (spec.getType() == ElementType.ROAD) {
+	  roads.remove(element);
+	  if (roadNetwork != null) roadNetwork.remove(element);
+	}
+	if (spec instanceof ServiceSpec) getCoverage(spec.getType()).remove(element);
+	scorer.elementRemoved(element);
+	verifyStart = Metrics.ENABLED ? System.nanoTime() : 0;
+	verifier.updateAffectedElements(element);
+	if (Metrics.ENABLED) VERIFY_LATENCY.record(verifyNanos + System.nanoTime() - verifyStart);
+	record(element, false);
+  }
+
+  // Returns a mark for the current state of the city that undoTo can later
+  // return to. Once a mark has been taken, every add and remove is recorded
+  // until clearTrail is called.
+  //
+  // This lets a search apply and revert moves without creating new cities:
+  // take a mark, apply moves, then undo back to the mark.
+  public int mark() {
+	if (trailElements == null) {
+	  trailElements = new GridElement[64];
+	  trailWasAdd = new boolean[64];
+	}
+	isTrailing = true;
+	return trailSize;
+  }
+
+  // Reverts every add and remove since the given mark was taken, most recent
+  // first. All indexes, coverage counts and constraint status are reverted
+  // along with them, at the cost of the changes being reverted.
+  public void undoTo(int mark) {
+	if (!isTrailing || mark < 0 || mark > trailSize) {
+	  throw new IllegalArgumentException("Unknown mark " + mark + ", trail has " + trailSize + " changes");
+	}
+	while (trailSize > mark) {
+	  trailSize--;
+	  GridElement element = trailElements[trailSize];
+	  boolean wasAdd = trailWasAdd[trailSize];
+	  trailElements[trailSize] = null;
+
+	  // Undo without recording the undo itself.
+	  isTrailing = false;
+	  if (wasAdd) {
+		removeElement(occupancy.getElementId(element.getPosition().getX(), element.getPosition().getY()));
+	  } else {
+		addElement(element);
+	  }
+	  isTrailing = true;
+	}
+  }
+
+  // Forgets all recorded changes and stops recording until the next mark.
+  public void clearTrail() {
+	isTrailing = false;
+	if (trailElements != null) Arrays.fill(trailElements, 0, trailSize, null);
+	trailSize = 0;
+  }
+
+  private void record(GridElement element, boolean wasAdd) {
+	if (!isTrailing) return;
+	if (trailSize == trailElements.length) {
+	  trailElements = Arrays.copyOf(trailElements, trailSize * 2);
+	  trailWasAdd = Arrays.copyOf(trailWasAdd, trailSize * 2);
+	}
+	trailElements[trailSize] = element;
+	trailWasAdd[trailSize] = wasAdd;
+	trailSize++;
+  }
+
+  // Returns a new list with all the elements in the city.
+  public List<GridElement> getElements() {
+	List<GridElement> elements = new ArrayList<>();
+	for (List<GridElement> elementsOfType : gridElementsByType.values()) {
+	  elements.addAll(elementsOfType);
+	}
+	return elements;
+  }
+
+  private CoverageGrid getCoverage(ElementType serviceType) {
+	CoverageGrid coverage = coverageByServiceType.get(serviceType);
+	if (coverage == null) {
+	  coverage = new CoverageGrid(cityLimits.getX(), cityLimits.getY());
+	  coverageByServiceType.put(serviceType, coverage);
+	}
+	return coverage;
+  }
+
+  // True if the whole footprint of an element with the given spec fits inside the city limits
+  // at the given position without overlapping any existing element.
+  public boolean canPlace(ElementSpec spec, Position position) {
+	int x = position.getX();
+	int y = position.getY();
+	return occupancy.isInside(x, y, spec.getHeight(), spec.getWidth())
+		&& occupancy.isFree(x, y, spec.getHeight(), spec.getWidth());
+  }
+
+  // Returns the element taking up the given position, or null if the position is free.
+  public GridElement getElementAt(Position position) {
+	return occupancy.getElementAt(position.getX(), position.getY());
+  }
+
+  // Returns the position of the given cell. Every call for the same cell of
+  // this city returns the same instance, so positions don't have to be
+  // created over and over in loops.
+  public Position getPosition(int x, int y) {
+	if (x < 0 || y < 0 || x >= cityLimits.getX() || y >= cityLimits.getY()) {
+	  throw new IllegalArgumentException("Position (" + x + ", " + y + ") is outside of city limits " + cityLimits);
+	}
+	int cell = x * cityLimits.getY() + y;
+	Position position = positions[cell];
+	if (position == null) {
+	  position = new Position(x, y);
+	  positions[cell] = position;
+	}
+	return position;
+  }
+
+  public Position getCityLimits() {
+	return cityLimits;
+  }
+
+  public int getNumElements(ElementType type) {
+	return gridElementsByType.get(type).size();
+  }
+
+  // Returns one of the elements of the given type, 0 <= index < getNumElements(type).
+  // The order of the elements changes as elements are removed.
+  public GridElement getElement(ElementType type, int index) {
+	return gridElementsByType.get(type).get(index);
+  }
+
+  // Returns the weighted sum of the score terms, see ScoreTerm. Kept up to date
+  // as elements are added and removed, so it's cheap to call after every move.
+  public long getScore() {
+	return scorer.getScore();
+  }
+
+  // Returns the unweighted value of a single score term.
+  public long getScoreTerm(ScoreTerm term) {
+	return scorer.getTermValue(term);
+  }
+
+  public void setScoreWeight(ScoreTerm term, int weight) {
+	scorer.setWeight(term, weight);
+  }
+
+  // Returns how much the score would change by adding an element with the
+  // given spec at the given position, looking only at the cells it would take
+  // and cover. Doesn't check that the element can be placed there.
+  public long getScoreDelta(ElementSpec spec, Position position) {
+	if (!occupancy.isInside(position.getX(), position.getY(), spec.getHeight(), spec.getWidth())) {
+	  throw new IllegalArgumentException("Element " + spec + " at " + position + " is outside of city limits " + cityLimits);
+	}
+	return scorer.getScoreDelta(spec, position.getX(), position.getY());
+  }
+
+  long computeScoreFromScratch() {
+	return scorer.computeScoreFromScratch();
+  }
+
+  // Returns a 64-bit hash of the elements in the city. Cities with the same
+  // elements have the same hash, no matter in which order they were added.
+  // Computed from all the elements on every call: the search doesn't need it,
+  // so adding and removing elements doesn't keep it up to date.
+  public long getZobristHash() {
+	return getZobristHash(Symmetry.IDENTITY);
+  }
+
+  // Returns the hash the city would have after applying the given symmetry.
+  public long getZobristHash(Symmetry symmetry) {
+	if (!symmetry.appliesTo(cityLimits)) {
+	  throw new IllegalArgumentException(symmetry + " doesn't apply to city limits " + cityLimits);
+	}
+	long hash = 0;
+	for (List<GridElement> elementsOfType : gridElementsByType.values()) {
+	  for (int i = 0; i < elementsOfType.size(); i++) {
+		GridElement element = elementsOfType.get(i);
+		hash ^= ZobristKeys.of(element.getSpec(), element.getPosition().getX(), element.getPosition().getY(),
+			symmetry, cityLimits.getX(), cityLimits.getY());
+	  }
+	}
+	return hash;
+  }
+
+  // Returns the same hash for all orientations of the city under the given
+  // symmetries, which must include the identity: the smallest of their hashes.
+  public long getCanonicalHash(List<Symmetry> symmetries) {
+	long canonicalHash = Long.MAX_VALUE;
+	for (int i = 0; i < symmetries.size(); i++) {
+	  canonicalHash = Math.min(canonicalHash, getZobristHash(symmetries.get(i)));
+	}
+	return canonicalHash;
+  }
+
+  // Returns the symmetry that maps the city to its canonical orientation.
+  public Symmetry getCanonicalSymmetry(List<Symmetry> symmetries) {
+	Symmetry canonical = null;
+	long canonicalHash = 0;
+	for (int i = 0; i < symmetries.size(); i++) {
+	  long hash = getZobristHash(symmetries.get(i));
+	  if (canonical == null || hash < canonicalHash) {
+		canonical = symmetries.get(i);
+		canonicalHash = hash;
+	  }
+	}
+	return canonical;
+  }
+
+  // Returns the image of the city under the given symmetry.
+  public City transform(Symmetry symmetry) {
+	if (!symmetry.appliesTo(cityLimits)) {
+	  throw new IllegalArgumentException(symmetry + " doesn't apply to city limits " + cityLimits);
+	}
+	City image = new City(cityLimits, entrance == null ? null : transform(symmetry, entrance));
+	image.placementHeuristic = placementHeuristic;
+	scorer.copyWeightsTo(image.scorer);
+	for (GridElement element : getElements()) {
+	  image.addElement(symmetry.transform(element, image));
+	}
+	return image;
+  }
+
+  // Returns the image of a single cell under the given symmetry.
+  private Position transform(Symmetry symmetry, Position cell) {
+	return getPosition(
+		symmetry.transformX(cell.getX(), cell.getY(), 1, 1, cityLimits.getX(), cityLimits.getY()),
+		symmetry.transformY(cell.getX(), cell.getY(), 1, 1, cityLimits.getX(), cityLimits.getY()));
+  }
+
+  // Returns the symmetries under which the city and any layout grown from it
+  // with elements of the given specs keep the same score: the ones that apply
+  // to the city limits, map coverage to coverage for every spec, and map the
+  // current elements onto themselves. Always includes the identity.
+  public List<Symmetry> getSymmetries(Collection<ElementSpec> specs) {
+	List<Symmetry> symmetries = new ArrayList<>();
+	List<GridElement> elements = getElements();
+	for (Symmetry symmetry : Symmetry.values()) {
+	  if (symmetry.appliesTo(cityLimits) && preservesCoverage(symmetry, specs, elements) && mapsOntoItself(symmetry, elements)) {
+		symmetries.add(symmetry);
+	  }
+	}
+	return symmetries;
+  }
+
+  private boolean preservesCoverage(Symmetry symmetry, Collection<ElementSpec> specs, List<GridElement> elements) {
+	for (ElementSpec spec : specs) {
+	  if (!symmetry.preservesCoverage(spec, cityLimits)) return false;
+	}
+	for (GridElement element : elements) {
+	  if (!symmetry.preservesCoverage(element.getSpec(), cityLimits)) return false;
+	}
+	return true;
+  }
+
+  private boolean mapsOntoItself(Symmetry symmetry, List<GridElement> elements) {
+	if (entrance != null && !transform(symmetry, entrance).equals(entrance)) return false;
+	for (GridElement element : elements) {
+	  GridElement image = symmetry.transform(element, this);
+	  Position position = image.getPosition();
+	  int id = occupancy.getElementId(position.getX(), position.getY());
+	  if (id == OccupancyGrid.EMPTY || !occupancy.getElement(id).equals(image)) return false;
+	}
+	return true;
+  }
+
+  public int getNumFreeCells() {
+	return cityLimits.getX() * cityLimits.getY() - occupancy.getNumTakenCells();
+  }
+
+  // True if an element with the given spec placed at the given position would
+  // be covered by all required services currently in the city.
+  public boolean isCoveredByRequiredServices(ElementSpec spec, Position position) {
+	return isCoveredByRequiredServices(position.getX(), position.getY(), spec.getHeight(), spec.getWidth());
+  }
+
+  // Same as above for an element anchored at (x, y).
+  public boolean isCoveredByRequiredServices(ElementSpec spec, int x, int y) {
+	return isCoveredByRequiredServices(x, y, spec.getHeight(), spec.getWidth());
+  }
+
+  private boolean isCoveredByRequiredServices(int x, int y, int height, int width) {
+	// House only needs to be covered by one of each service type, so check
+	// whether the coverage of all services of that type reaches any part of
+	// the house.
+	for (int i = 0; i < REQUIRED_SERVICE_TYPES.size(); i++) {
+	  CoverageGrid coverage = coverageByServiceType.get(REQUIRED_SERVICE_TYPES.get(i));
+	  if (coverage == null || !coverage.isAnyCellCovered(x, y, height, width)) {
+		return false;
+	  }
+	}
+	return true;
+  }
+
+  // Returns a new city with the same limits, placement heuristic and elements.
+  public City copy() {
+	City copy = new City(cityLimits, entrance);
+	copy.placementHeuristic = placementHeuristic;
+	scorer.copyWeightsTo(copy.scorer);
+	for (GridElement element : getElements()) {
+	  copy.add(element);
+	}
+	return copy;
+  }
+
+  // True if the given cell is taken by an element or is outside of the city limits.
+  boolean isTakenOrOutside(int x, int y) {
+	return !freeSpace.fits(x, y, 1, 1);
+  }
+
+  public PlacementHeuristic getPlacementHeuristic() {
+	return placementHeuristic;
+  }
+
+  // Sets the heuristic used for ranking the positions returned by findPlacements.
+  public void setPlacementHeuristic(PlacementHeuristic placementHeuristic) {
+	this.placementHeuristic = placementHeuristic;
+  }
+
+  // Returns the positions where an element with the given spec can be placed:
+  // its whole footprint fits in free space and at least one of its edges is
+  // fully covered by road. Positions are ranked by the placement heuristic,
+  // best first.
+  public List<Position> findPlacements(ElementSpec spec) {
+	return placementFinder.findPlacements(spec);
+  }
+
+  // Same as findPlacements, but writes the anchors as cell indexes
+  // (x * number of columns + y) to the given array instead of creating
+  // positions. The array must have room for one entry per cell of the city.
+  // Returns the number of placements found.
+  public int findPlacementCells(ElementSpec spec, int[] anchorCells) {
+	return placementFinder.findPlacementCells(spec, anchorCells);
   }
 
   // Element must be placed so that it satisfies constraints.
   // If doesn't then address the constraints not satisfied.
   // Returns true if element was placed successfully.
+  //
+  // The element is placed at the best position returned by findPlacements, so
+  // there needs to be road it can be attached to.
   public boolean tryToPlaceElement(ElementSpec spec) {
-	// TODO: consider also keeping a list of taken positions (would need to
-	// update add & remove calls to add to this list.
-	Set<Position> takenPositions = gridElementsByPosition.keySet();
-	
 	// TODO: !!!!!this will limit what we can do - can't place a house before the req services are
 	// placed. This means required services will always be at the edges and won't have their
 	// coverage area utilization maximized.
 	// A better approach might be to iterate through the required services and create a new
 	// city for each area that they're placed in. Then iteratively add houses and roads.
-	
-	// Iterate through the grid trying to place the element.
-	// Should we look for road? Or just place and then add if it's not there?
-	for (int x = 0; x < cityLimits.getX(); x++) {
-	  for (int y = 0; y < cityLimits.getY(); y++) {
-		// TODO:
-	  }
-	}
+	List<Position> placements = findPlacements(spec);
+	if (placements.isEmpty()) return false;
+	add(new GridElement(spec, placements.get(0)));
 	return true;
   }
 
   // Returns true if all the requirements for the city are satisfied:
   // - all elements are touching a road on at least 1 edge
   // - all houses are covered by required services (fire, water, etc.)
+  //
+  // Constraint status is kept up to date on every add and remove, so this is a
+  // constant time check.
   public boolean areRequirementsSatisfied() {
-	return verifier.verify();
+	return getNumViolations() == 0;
+  }
+
+  // Returns the entrance of the city, or null if it has none.
+  public Position getEntrance() {
+	return entrance;
+  }
+
+  // Returns the number of roads that aren't connected to the entrance, or 0
+  // if the city has no entrance.
+  public int getNumDisconnectedRoads() {
+	if (roadNetwork == null) return 0;
+	return getNumElements(ElementType.ROAD) - roadNetwork.getNumConnectedRoads(entrance.getX(), entrance.getY());
+  }
+
+  // Returns the number of (element, constraint) pairs that are currently violated.
+  public int getNumViolations() {
+	return verifier.getNumViolations() + getNumDisconnectedRoads();
+  }
+
+  // Counts the violated constraints from scratch, ignoring the incrementally
+  // kept constraint status. Used to cross-check the incremental bookkeeping.
+  int countViolationsFromScratch() {
+	return verifier.countViolations(null);
+  }
+
+  // Same as above, counting only the violations of the given constraint.
+  int countViolationsFromScratch(ElementConstraint constraint) {
+	return verifier.countViolations(constraint);
   }
 
   @Override
@@ -87,7 +546,7 @@ public class City {
 
 	// First find edges of grid to create 2D array modeling the grid.
 	int maxX = 0, maxY = 0;
-	for (GridElement element : gridElementsByType.values()) {
+	for (GridElement element : getElements()) {
 	  int x = element.getPosition().getX();
 	  int y = element.getPosition().getY();
 	  if (x > maxX) {
@@ -101,7 +560,7 @@ public class City {
 	// create the grid and fill in the first letter of the type of element
 	// in the coordinates it occupies.
 	String[][] grid = new String[maxX + 1][maxY + 1];
-	for (GridElement element : gridElementsByType.values()) {
+	for (GridElement element : getElements()) {
 	  grid[element.getPosition().getX()][element.getPosition().getY()] =
 		  element.getSpec().getType().name().substring(0, 1);
 	}
@@ -127,42 +586,181 @@ public class City {
 	str.append("--\n"); // 2 extra dashes for the edge columns
 
 	// Print details for all services.
-	str.append("GridElements [").append(gridElementsByType.values());
+	str.append("GridElements [").append(getElements());
 
 	return str.toString();
   }
   
  
   // Verifies constraints on elements in city.
+  //
+  // The status of every constraint of every element is kept up to date as
+  // elements are added and removed. Only the elements around the change are
+  // re-checked: the ones bordering an added or removed road and the houses in
+  // the coverage area of an added or removed service.
   private class ConstraintVerifier {
-	boolean verify() {
-	  boolean requirementsSatisfied = true;
-	  for (GridElement element : gridElementsByType.values()) {
+	// Constraints currently violated by each element, as a bit mask of
+	// ElementConstraint ordinals. Indexed by element id.
+	private int[] violatedConstraints = new int[16];
+	private int numViolations;
+
+	int getNumViolations() {
+	  return numViolations;
+	}
+
+	// Checks the constraints of a newly added element and of the elements
+	// around it whose constraints it may have changed.
+	void elementAdded(int id) {
+	  if (id >= violatedConstraints.length) {
+		violatedConstraints = Arrays.copyOf(violatedConstraints, Math.max(id + 1, violatedConstraints.length * 2));
+	  }
+	  violatedConstraints[id] = 0;
+	  GridElement element = occupancy.getElement(id);
+	  List<ElementConstraint> constraints = element.getSpec().getType().getConstraints();
+	  for (int i = 0; i < constraints.size(); i++) {
+		// Removing a single road can disconnect many others, so connectivity
+		// isn't kept per element but counted by getNumDisconnectedRoads.
+		if (constraints.get(i) == ElementConstraint.CONNECTED_TO_ENTRANCE) continue;
+		updateStatus(id, constraints.get(i));
+	  }
+	  updateAffectedElements(element);
+	}
+
+	// Forgets the constraint status of an element that's about to be removed.
+	// Once it's removed, updateAffectedElements has to be called for it.
+	void elementRemoving(int id) {
+	  numViolations -= Integer.bitCount(violatedConstraints[id]);
+	  violatedConstraints[id] = 0;
+	}
+
+	// Re-checks the constraints of the elements that may have changed when
+	// the given element was added or removed.
+	void updateAffectedElements(GridElement element) {
+	  ElementSpec spec = element.getSpec();
+	  int x = element.getPosition().getX();
+	  int y = element.getPosition().getY();
+	  int maxX = x + spec.getHeight() - 1;
+	  int maxY = y + spec.getWidth() - 1;
+
+	  if (spec.getType() == ElementType.ROAD) {
+		// Elements whose edges touch the road.
+		for (int i = y; i <= maxY; i++) {
+		  updateNearRoadStatus(x - 1, i);
+		  updateNearRoadStatus(maxX + 1, i);
+		}
+		for (int i = x; i <= maxX; i++) {
+		  updateNearRoadStatus(i, y - 1);
+		  updateNearRoadStatus(i, maxY + 1);
+		}
+	  }
+
+	  if ((spec instanceof ServiceSpec) && REQUIRED_SERVICE_TYPES.contains(spec.getType())) {
+		// Houses with at least one cell in the coverage area.
+		ServiceSpec serviceSpec = (ServiceSpec) spec;
+		int startX = CoverageGrid.getCoverageStartX(element);
+		int startY = CoverageGrid.getCoverageStartY(element);
+		int fromX = Math.max(0, startX), toX = Math.min(cityLimits.getX(), startX + serviceSpec.getCoverageHeight());
+		int fromY = Math.max(0, startY), toY = Math.min(cityLimits.getY(), startY + serviceSpec.getCoverageWidth());
+		for (int i = fromX; i < toX; i++) {
+		  for (int j = fromY; j < toY; j++) {
+			int id = occupancy.getElementId(i, j);
+			if (id != OccupancyGrid.EMPTY && occupancy.getElement(id).getSpec().getType() == ElementType.HOUSE) {
+			  updateStatus(id, ElementConstraint.COVERED_BY_REQUIRED_SERVICE);
+			}
+		  }
+		}
+	  }
+	}
+
+	private void updateNearRoadStatus(int x, int y) {
+	  int id = occupancy.getElementId(x, y);
+	  if (id != OccupancyGrid.EMPTY
+		  && occupancy.getElement(id).getSpec().getType().getConstraints().contains(ElementConstraint.NEAR_ROAD)) {
+		updateStatus(id, ElementConstraint.NEAR_ROAD);
+	  }
+	}
+
+	// Re-checks a single constraint of an element and updates the violation count.
+	private void updateStatus(int id, ElementConstraint constraint) {
+	  int bit = 1 << constraint.ordinal();
+	  boolean wasViolated = (violatedConstraints[id] & bit) != 0;
+	  boolean isViolated = !isSatisfied(occupancy.getElement(id), constraint);
+	  if (isViolated == wasViolated) return;
+	  violatedConstraints[id] ^= bit;
+	  numViolations += isViolated ? 1 : -1;
+	}
+
+	// Checks all constraints of all elements from scratch and returns the
+	// number of violated ones. Only checks the given constraint unless it's null.
+	int countViolations(ElementConstraint onlyConstraint) {
+	  int violations = 0;
+	  BitGrid connectedRoads = onlyConstraint == null || onlyConstraint == ElementConstraint.CONNECTED_TO_ENTRANCE
+		  ? findRoadsConnectedToEntrance() : null;
+	  for (GridElement element : getElements()) {
 		for (ElementConstraint constraint : element.getSpec().getType().getConstraints()) {
-		  switch (constraint) {
-			case NEAR_ROAD:
-			  boolean isConnectedToRoad = isConnectedToRoad(element);
-			  System.out.println("element " + element + " isConnectedToRoad? " + isConnectedToRoad);
-			  requirementsSatisfied &= isConnectedToRoad;
-			  break;
-			case DOES_NOT_OVERLAP:
-			  Position position = element.getPosition();
-			  boolean overlaps = gridElementsByPosition.containsKey(position);
-			  System.out.println("Element " + element + " overlaps? " + overlaps);
-			  break;
-			case COVERED_BY_REQUIRED_SERVICE:
-			  boolean isCoveredByServices = isHouseCoveredByServices(element);
-			  System.out.println("element " + element + " isCoveredByServices? " + isCoveredByServices);
-			  requirementsSatisfied &= isCoveredByServices;
-			  break;
-			default:
-			  throw new IllegalArgumentException("Unsupported ElementConstraint " + constraint);
+		  if (onlyConstraint != null && constraint != onlyConstraint) {
+			continue;
+		  } else if (constraint == ElementConstraint.CONNECTED_TO_ENTRANCE) {
+			Position position = element.getPosition();
+			if (entrance != null && !connectedRoads.get(position.getX(), position.getY())) violations++;
+		  } else if (!isSatisfied(element, constraint)) {
+			violations++;
 		  }
 		}
 		// TODO add other requirements (e.g. power, water, sewer - these aren't
 		// necessary for finding a good land configuration though)
 	  }
-	  return requirementsSatisfied;
+	  return violations;
+	}
+
+	// Flood fills the roads from the entrance, without using the road network.
+	private BitGrid findRoadsConnectedToEntrance() {
+	  BitGrid connected = new BitGrid(cityLimits.getX(), cityLimits.getY());
+	  if (entrance == null || !roads.isRoad(entrance.getX(), entrance.getY())) return connected;
+	  long[] toVisit = new long[cityLimits.getX() * cityLimits.getY()];
+	  int numToVisit = 0;
+	  toVisit[numToVisit++] = entrance.pack();
+	  connected.set(entrance.getX(), entrance.getY());
+	  while (numToVisit > 0) {
+		long cell = toVisit[--numToVisit];
+		int x = Position.unpackX(cell), y = Position.unpackY(cell);
+		for (int i = 0; i < 4; i++) {
+		  int neighborX = x + (i == 0 ? -1 : i == 1 ? 1 : 0);
+		  int neighborY = y + (i == 2 ? -1 : i == 3 ? 1 : 0);
+		  if (connected.isInside(neighborX, neighborY) && roads.isRoad(neighborX, neighborY)
+			  && !connected.get(neighborX, neighborY)) {
+			connected.set(neighborX, neighborY);
+			toVisit[numToVisit++] = Position.pack(neighborX, neighborY);
+		  }
+		}
+	  }
+	  return connected;
+	}
+
+	private boolean isSatisfied(GridElement element, ElementConstraint constraint) {
+	  if (Metrics.ENABLED) CONSTRAINT_CHECKS.increment(constraint);
+	  switch (constraint) {
+		case NEAR_ROAD:
+		  return isConnectedToRoad(element);
+		case DOES_NOT_OVERLAP:
+		  return !overlapsOtherElement(element);
+		case COVERED_BY_REQUIRED_SERVICE:
+		  return isHouseCoveredByServices(element);
+		case CONNECTED_TO_ENTRANCE:
+		  return roadNetwork == null || roadNetwork.isConnected(element.getPosition().getX(),
+			  element.getPosition().getY(), entrance.getX(), entrance.getY());
+		default:
+		  throw new IllegalArgumentException("Unsupported ElementConstraint " + constraint);
+	  }
+	}
+
+	// True if any cell of the element's footprint is taken by a different element.
+	private boolean overlapsOtherElement(GridElement element) {
+	  Position position = element.getPosition();
+	  int id = occupancy.getElementId(position.getX(), position.getY());
+	  ElementSpec spec = element.getSpec();
+	  return id == OccupancyGrid.EMPTY
+		  || !occupancy.isOwnedBy(id, position.getX(), position.getY(), spec.getHeight(), spec.getWidth());
 	}
 
 	// True if the given element is connected to a road.
@@ -175,63 +773,18 @@ public class City {
 	  // a road apparently!
 
 	  // Look at each edge to see if there is a road on the other side of that
-	  // edge.
+	  // edge. The road index checks a whole edge at once instead of probing
+	  // cell by cell.
 	  Position position = element.getPosition();
-	  int x = position.getX();
-	  int y = position.getY();
 	  ElementSpec spec = element.getSpec();
-	  int width = spec.getWidth();
-	  int height = spec.getHeight();
-	  int maxX = x + height - 1;
-	  int maxY = y + width - 1;
-
-	  // Top edge - go along x-1, starting at y and going to maxY.
-	  boolean edgeHasRoad = true; // this will be true only if an edge is of
-								  // length 0, or if the edge is covered by
-								  // road.
-	  for (int i = y; i <= maxY; i++) {
-		Position coord = new Position(x - 1, i);
-		edgeHasRoad &= isRoad(coord);
-	  }
-	  if (edgeHasRoad) return true;
-
-	  // Bottom edge - go along maxX+1, starting at y and going to maxY.
-	  edgeHasRoad = true; // reset
-	  for (int i = y; i <= maxY; i++) {
-		Position coord = new Position(maxX + 1, i);
-		edgeHasRoad &= isRoad(coord);
-	  }
-	  if (edgeHasRoad) return true;
-
-	  // Left edge - go along y-1, starting at x and going to maxX.
-	  edgeHasRoad = true; // reset
-	  for (int i = x; i <= maxX; i++) {
-		Position coord = new Position(i, y - 1);
-		edgeHasRoad &= isRoad(coord);
-	  }
-	  if (edgeHasRoad) return true;
+	  if (spec.getType() == ElementType.ROAD && entrance != null && covers(element, entrance)) return true;
+	  return roads.hasRoadOnAnEdge(position.getX(), position.getY(), spec.getHeight(), spec.getWidth());
+	}
 
-	  // Right edge - go along maxY+1, starting at x and going to maxX.
-	  edgeHasRoad = true; // reset
-	  for (int i = x; i <= maxX; i++) {
-		Position coord = new Position(i, maxY + 1);
-		edgeHasRoad &= isRoad(coord);
-	  }
-	  return edgeHasRoad;
-	}
-
-	// Returns true if there is a road at the given position.
-	private boolean isRoad(Position position) {
-	  System.out.println("Looking for road at " + position);
-	  // If there are no roads, should false because this is only called to
-	  // check if
-	  // there's a road next to an item and if there's no road, it's wrong.
-	  boolean isRoad = false;
-	  for (GridElement road : gridElementsByType.get(ElementType.ROAD)) {
-		isRoad |= road.getPosition().equals(position);
-	  }
-	  if (isRoad) System.out.println("Found road at " + position);
-	  return isRoad;
+	private boolean covers(GridElement element, Position cell) {
+	  Position position = element.getPosition();
+	  return cell.getX() >= position.getX() && cell.getX() < position.getX() + element.getSpec().getHeight()
+		  && cell.getY() >= position.getY() && cell.getY() < position.getY() + element.getSpec().getWidth();
 	}
 
 	// True if a house at a given coordinate is covered by all required
@@ -242,89 +795,206 @@ public class City {
 
 	  // This will only return true if there are no required services or
 	  // if all houses are covered by required services.
-	  boolean isCovered = true;
-	  // Find existing services in city of this type and check if their coverage
-	  // area covers item.
-	  for (ElementType serviceType : REQUIRED_SERVICE_TYPES) {
-		// House only needs to be covered by one of each service type.
-		boolean isCoveredByServiceType = false;
-		for (GridElement gridElement : gridElementsByType.get(serviceType)) {
-		  isCoveredByServiceType |= isElementCoveredByElement(house, gridElement);
-		}
-		isCovered &= isCoveredByServiceType;
+	  return isCoveredByRequiredServices(house.getSpec(), house.getPosition());
+	}
+  }
+  
+  // Finds where new elements can be placed.
+  //
+  // Instead of scanning every cell of the city, only the positions right next
+  // to road cells are considered, since an element needs a full edge covered
+  // by road. Each candidate is then checked against the placement index.
+  private class PlacementFinder {
+	private final BitGrid seenAnchors = new BitGrid(cityLimits.getX(), cityLimits.getY());
+	// Candidates found so far, encoded so that sorting them puts the best first.
+	private long[] rankedCandidates = new long[64];
+	private int numCandidates;
+
+	List<Position> findPlacements(ElementSpec spec) {
+	  int numFound = rankPlacements(spec);
+	  List<Position> placements = new ArrayList<>(numFound);
+	  for (int i = 0; i < numFound; i++) {
+		int anchor = (int) rankedCandidates[i];
+		placements.add(getPosition(anchor / cityLimits.getY(), anchor % cityLimits.getY()));
 	  }
-	  return isCovered;
+	  return placements;
 	}
 
-	// Returns true is an element is covered by a given element.
-	private boolean isElementCoveredByElement(GridElement coverableElement, GridElement coveringElement) {
-	  if (!(coveringElement.getSpec() instanceof ServiceSpec)) {
-		new IllegalArgumentException("element doesn't implement HasCoverageArea " + coveringElement);
+	int findPlacementCells(ElementSpec spec, int[] anchorCells) {
+	  int numFound = rankPlacements(spec);
+	  if (anchorCells.length < numFound) {
+		throw new IllegalArgumentException("Need room for " + numFound + " cells, got " + anchorCells.length);
 	  }
-
-	  // Verify if any part of the house overlaps with the given service.
-	  // Do this by gathering that set of Positions for the house and looking
-	  // for an intersection with the set of Positions of the service.
-	  int coverableX = coverableElement.getPosition().getX();
-	  int coverableY = coverableElement.getPosition().getY();
-	  ElementSpec coverableSpec = coverableElement.getSpec();
-	  Set<Position> coverablePositions = new HashSet<>();
-	  for (int x = coverableX; x < coverableX + coverableSpec.getHeight(); x++) {
-		for (int y = coverableY; y < coverableY + coverableSpec.getWidth(); y++) {
-		  coverablePositions.add(new Position(x, y));
-		}
+	  for (int i = 0; i < numFound; i++) {
+		anchorCells[i] = (int) rankedCandidates[i];
 	  }
+	  return numFound;
+	}
 
-	  // Note: coverage area could actually be outside of city limits. That's OK, but need to
-	  // account for it in the calculations so that we don't go outside of bounds.
-	  ServiceSpec coveringSpec = (ServiceSpec) coveringElement.getSpec();
-	  Position startOfCoverage = getStartOfCoverage(coveringElement);
-	  int coveringX = startOfCoverage.getX();
-	  int coveringY = startOfCoverage.getY();
-	  // Note: coverage could be outside of city limits, which is ok, but we want to account for that to not get IndexOutOfBounds.
-	  int coveringMaxX = Math.max(cityLimits.getX(), coveringX + coveringSpec.getCoverageHeight() - 1);
-	  int coveringMaxY = Math.max(cityLimits.getY(), coveringY + coveringSpec.getCoverageWidth() - 1);
-	  Set<Position> coveringPositions = new HashSet<>();
-	  for (int x = coveringX; x <= coveringMaxX; x++) {
-		for (int y = coveringY; y < coveringMaxY; y++) {
-		  coveringPositions.add(new Position(x, y));
+	// Finds and sorts the candidates, returns the number found.
+	private int rankPlacements(ElementSpec spec) {
+	  int height = spec.getHeight();
+	  int width = spec.getWidth();
+	  int numColumns = cityLimits.getY();
+	  seenAnchors.clearAll();
+	  numCandidates = 0;
+	  for (int cell = roads.nextRoadCell(0); cell != -1; cell = roads.nextRoadCell(cell + 1)) {
+		int roadX = cell / numColumns;
+		int roadY = cell % numColumns;
+		for (int i = 0; i < width; i++) {
+		  considerAnchor(spec, roadX + 1, roadY - i); // road on the top edge
+		  considerAnchor(spec, roadX - height, roadY - i); // road on the bottom edge
+		}
+		for (int i = 0; i < height; i++) {
+		  considerAnchor(spec, roadX - i, roadY + 1); // road on the left edge
+		  considerAnchor(spec, roadX - i, roadY - width); // road on the right edge
 		}
 	  }
 
-	  boolean isCovered = !Sets.intersection(coverablePositions, coveringPositions).isEmpty();
-	  System.out
-		  .println("Checking if element " + coverableElement + " is covered by " + coveringElement + " =" + isCovered);
-	  return isCovered;
+	  Arrays.sort(rankedCandidates, 0, numCandidates);
+	  return numCandidates;
 	}
 
-	// Returns the Position of the start of coverage for a given element.
-	private Position getStartOfCoverage(GridElement element) {
-	  if (!(element.getSpec() instanceof ServiceSpec)) {
-		new IllegalArgumentException("element doesn't implement HasCoverageArea " + element);
+	private void considerAnchor(ElementSpec spec, int x, int y) {
+	  if (!seenAnchors.isInside(x, y) || seenAnchors.get(x, y)) return;
+	  seenAnchors.set(x, y);
+	  if (!freeSpace.fits(x, y, spec.getHeight(), spec.getWidth())
+		  || !roads.hasRoadOnAnEdge(x, y, spec.getHeight(), spec.getWidth())) {
+		return;
 	  }
 
-	  ServiceSpec spec = (ServiceSpec) element.getSpec();
-	  Position position = element.getPosition();
-	  // Note: coverage could be outside of city limits, which is ok, but we want to account for that to not get IndexOutOfBounds.
-	  int x = Math.min(0, position.getX() - ((spec.getCoverageWidth() - spec.getWidth()) / 2));
-	  int y = Math.min(0, position.getY() - ((spec.getCoverageHeight() - spec.getHeight()) / 2));
-	  return new Position(x, y);
+	  int score = placementHeuristic.score(City.this, spec, getPosition(x, y));
+	  if (numCandidates == rankedCandidates.length) {
+		rankedCandidates = Arrays.copyOf(rankedCandidates, numCandidates * 2);
+	  }
+	  // Higher scores sort first, ties are broken by the anchor's cell index.
+	  rankedCandidates[numCandidates++] = (-(long) score << 32) | (x * cityLimits.getY() + y);
 	}
   }
-  
+
+  // Keeps the value of every score term up to date as elements are added and
+  // removed. An element's contribution to the terms only depends on the cells
+  // it takes and, for services, the cells it covers, so adding or removing it
+  // changes the score by exactly that contribution.
   private class Scorer {
-	private int score;
+	private final long[] termValues = new long[ScoreTerm.values().length];
+	private final int[] weights = new int[ScoreTerm.values().length];
+	// Number of services of any type covering each cell.
+	private final int[] coverageCounts = new int[cityLimits.getX() * cityLimits.getY()];
+
+	Scorer() {
+	  for (ScoreTerm term : ScoreTerm.values()) {
+		weights[term.ordinal()] = term.getDefaultWeight();
+	  }
+	}
 
-	int getScore() {
-	  score = 0;
+	long getScore() {
+	  long score = 0;
+	  for (int i = 0; i < termValues.length; i++) {
+		score += termValues[i] * weights[i];
+	  }
 	  return score;
 	}
 	
-	private void scoreOnCoverage() {
-	  // Want all service coverage areas to be utilized.
-	  // Lower score if service's coverage area is outside of city limits.
+	long getTermValue(ScoreTerm term) {
+	  return termValues[term.ordinal()];
+	}
 	  
-	  // Lower score if service's coverage area is covering roads.
+	void setWeight(ScoreTerm term, int weight) {
+	  weights[term.ordinal()] = weight;
+	}
+
+	void copyWeightsTo(Scorer other) {
+	  System.arraycopy(weights, 0, other.weights, 0, weights.length);
+	}
+
+	void elementAdded(GridElement element) {
+	  update(element.getSpec(), element.getPosition().getX(), element.getPosition().getY(), 1, true);
+	}
+
+	void elementRemoved(GridElement element) {
+	  update(element.getSpec(), element.getPosition().getX(), element.getPosition().getY(), -1, true);
+	}
+
+	// Returns the change in score from adding an element with the given spec
+	// at (x, y), without adding it.
+	long getScoreDelta(ElementSpec spec, int x, int y) {
+	  return update(spec, x, y, 1, false);
+	}
+
+	// Computes the contribution of the element to every term and, if apply is
+	// true, adds it to (sign 1) or subtracts it from (sign -1) the terms.
+	// Returns the contribution to the score.
+	private long update(ElementSpec spec, int x, int y, int sign, boolean apply) {
+	  long houses = 0, utilization = 0, outsideLimits = 0, onRoads = 0;
+	  int numColumns = cityLimits.getY();
+	  if (spec.getType() == ElementType.HOUSE || spec.getType() == ElementType.ROAD) {
+		long coveredCells = 0;
+		for (int i = x; i < x + spec.getHeight(); i++) {
+		  for (int j = y; j < y + spec.getWidth(); j++) {
+			coveredCells += coverageCounts[i * numColumns + j];
+		  }
+		}
+		if (spec.getType() == ElementType.HOUSE) {
+		  houses = 1;
+		  utilization = coveredCells;
+		} else {
+		  onRoads = coveredCells;
+		}
+	  } else if (spec instanceof ServiceSpec) {
+		ServiceSpec serviceSpec = (ServiceSpec) spec;
+		int startX = x - (serviceSpec.getCoverageHeight() - spec.getHeight()) / 2;
+		int startY = y - (serviceSpec.getCoverageWidth() - spec.getWidth()) / 2;
+		int fromX = Math.max(0, startX), toX = Math.min(cityLimits.getX(), startX + serviceSpec.getCoverageHeight());
+		int fromY = Math.max(0, startY), toY = Math.min(numColumns, startY + serviceSpec.getCoverageWidth());
+		int insideArea = Math.max(0, toX - fromX) * Math.max(0, toY - fromY);
+		outsideLimits = serviceSpec.getCoverageHeight() * serviceSpec.getCoverageWidth() - insideArea;
+		for (int i = fromX; i < toX; i++) {
+		  for (int j = fromY; j < toY; j++) {
+			if (apply) coverageCounts[i * numColumns + j] += sign;
+			int id = occupancy.getElementId(i, j);
+			if (id == OccupancyGrid.EMPTY) continue;
+			ElementType type = occupancy.getElement(id).getSpec().getType();
+			if (type == ElementType.HOUSE) {
+			  utilization++;
+			} else if (type == ElementType.ROAD) {
+			  onRoads++;
+			}
+		  }
+		}
+	  }
+
+	  if (apply) {
+		termValues[ScoreTerm.HOUSES.ordinal()] += sign * houses;
+		termValues[ScoreTerm.COVERAGE_UTILIZATION.ordinal()] += sign * utilization;
+		termValues[ScoreTerm.COVERAGE_OUTSIDE_LIMITS.ordinal()] += sign * outsideLimits;
+		termValues[ScoreTerm.COVERAGE_ON_ROADS.ordinal()] += sign * onRoads;
+	  }
+	  return sign * (houses * weights[ScoreTerm.HOUSES.ordinal()]
+		  + utilization * weights[ScoreTerm.COVERAGE_UTILIZATION.ordinal()]
+		  + outsideLimits * weights[ScoreTerm.COVERAGE_OUTSIDE_LIMITS.ordinal()]
+		  + onRoads * weights[ScoreTerm.COVERAGE_ON_ROADS.ordinal()]);
+	}
+
+	// Recomputes the score from the elements in the city, for testing the
+	// incrementally kept score.
+	long computeScoreFromScratch() {
+	  Scorer scorer = new Scorer();
+	  copyWeightsTo(scorer);
+	  List<GridElement> services = new ArrayList<>();
+	  for (GridElement element : getElements()) {
+		if (element.getSpec() instanceof ServiceSpec) {
+		  services.add(element);
+		}
+	  }
+	  // Services count the houses and roads in the city, so they go last.
+	  for (GridElement element : getElements()) {
+		if (!(element.getSpec() instanceof ServiceSpec)) scorer.elementAdded(element);
+	  }
+	  for (GridElement service : services) {
+		scorer.elementAdded(service);
+	  }
+	  return scorer.getScore();
 	}
   }
 }
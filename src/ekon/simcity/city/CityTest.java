@@ -0,0 +1,333 @@
+package ekon.simcity.city;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CityTest {
+
+  private City city;
+
+  @Before
+  public void setUp() {
+	city = new City(new Position(10, 10));
+  }
+
+  private GridElement add(ElementType type, int x, int y) {
+	GridElement element = ElementFactory.getElement(type, new Position(x, y));
+	city.add(element);
+	return element;
+  }
+
+  /** Verify that every cell of an element's footprint can be looked up, not just its anchor. */
+  @Test
+  public void testGetElementAt_wholeFootprint() {
+	GridElement house = add(ElementType.HOUSE, 1, 1);
+
+	assertEquals(house, city.getElementAt(new Position(1, 1)));
+	assertEquals(house, city.getElementAt(new Position(1, 2)));
+	assertEquals(house, city.getElementAt(new Position(2, 1)));
+	assertEquals(house, city.getElementAt(new Position(2, 2)));
+	assertNull(city.getElementAt(new Position(3, 3)));
+  }
+
+  /** Verify that a house cannot be placed over a road covering a cell other than its anchor. */
+  @Test(expected = IllegalStateException.class)
+  public void testAdd_overlapOnNonAnchorCell() {
+	add(ElementType.ROAD, 2, 2);
+	add(ElementType.HOUSE, 1, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAdd_outsideOfCityLimits() {
+	add(ElementType.HOUSE, 9, 0);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRemove_elementNotInCity() {
+	add(ElementType.ROAD, 0, 0);
+	city.remove(ElementFactory.getElement(ElementType.HOUSE, new Position(0, 0)));
+  }
+
+  /** Verify that removing an element frees up its whole footprint. */
+  @Test
+  public void testRemove_freesFootprint() {
+	GridElement house = add(ElementType.HOUSE, 1, 1);
+	ElementSpec houseSpec = house.getSpec();
+	assertFalse(city.canPlace(houseSpec, new Position(2, 2)));
+
+	city.remove(house);
+
+	assertTrue(city.canPlace(houseSpec, new Position(2, 2)));
+	assertNull(city.getElementAt(new Position(2, 2)));
+  }
+
+  /** Verify that an element is only near a road if a road touches one of its edges. */
+  @Test
+  public void testAreRequirementsSatisfied_nearRoad() {
+	add(ElementType.FIRE_STATION, 1, 1);
+	GridElement diagonalRoad = add(ElementType.ROAD, 0, 0);
+	assertFalse(city.areRequirementsSatisfied());
+
+	city.remove(diagonalRoad);
+	add(ElementType.ROAD, 1, 0);
+	add(ElementType.ROAD, 0, 0); // road next to a road
+	assertTrue(city.areRequirementsSatisfied());
+  }
+
+  /** Verify that houses need to be within the coverage area of every required service. */
+  @Test
+  public void testAreRequirementsSatisfied_coveredByRequiredServices() {
+	for (int y = 0; y < 10; y++) {
+	  add(ElementType.ROAD, 0, y);
+	}
+	add(ElementType.FIRE_STATION, 1, 0);
+	GridElement policeStation = add(ElementType.POLICE_STATION, 1, 1);
+	add(ElementType.HOUSE, 1, 2);
+	assertTrue(city.areRequirementsSatisfied());
+
+	GridElement farHouse = add(ElementType.HOUSE, 1, 8); // outside of both coverage areas
+	assertFalse(city.areRequirementsSatisfied());
+
+	city.remove(farHouse);
+	city.remove(policeStation);
+	assertFalse(city.areRequirementsSatisfied()); // remaining house not covered by police anymore
+  }
+
+  /** Verify that the incrementally kept violation count matches a count from scratch after every change. */
+  @Test
+  public void testGetNumViolations_matchesCountFromScratch() {
+	ElementType[] types = ElementType.values();
+	List<GridElement> elements = new ArrayList<>();
+	Random random = new Random(42);
+	for (int i = 0; i < 2000; i++) {
+	  if (!elements.isEmpty() && random.nextInt(3) == 0) {
+		city.remove(elements.remove(random.nextInt(elements.size())));
+	  } else {
+		GridElement element = ElementFactory.getElement(types[random.nextInt(types.length)],
+			new Position(random.nextInt(10), random.nextInt(10)));
+		if (!city.canPlace(element.getSpec(), element.getPosition())) continue;
+		city.add(element);
+		elements.add(element);
+	  }
+	  assertEquals(city.countViolationsFromScratch(), city.getNumViolations());
+	}
+  }
+
+  /** Verify that undoing to a mark restores the elements, free space and violations at the mark. */
+  @Test
+  public void testUndoTo_restoresStateAtMark() {
+	add(ElementType.ROAD, 0, 0);
+	GridElement house = add(ElementType.HOUSE, 1, 0);
+	int numFreeCells = city.getNumFreeCells();
+	int numViolations = city.getNumViolations();
+
+	int mark = city.mark();
+	add(ElementType.ROAD, 0, 1);
+	add(ElementType.FIRE_STATION, 0, 2);
+	city.remove(house);
+	add(ElementType.HOUSE, 2, 2);
+	city.undoTo(mark);
+
+	assertEquals(house, city.getElementAt(new Position(2, 1)));
+	assertNull(city.getElementAt(new Position(0, 1)));
+	assertNull(city.getElementAt(new Position(3, 3)));
+	assertEquals(1, city.getNumElements(ElementType.ROAD));
+	assertEquals(0, city.getNumElements(ElementType.FIRE_STATION));
+	assertEquals(numFreeCells, city.getNumFreeCells());
+	assertEquals(numViolations, city.getNumViolations());
+	assertEquals(city.countViolationsFromScratch(), city.getNumViolations());
+  }
+
+  /** Verify that positions are interned per city and survive packing into a long. */
+  @Test
+  public void testGetPosition() {
+	Position position = city.getPosition(3, 4);
+	assertTrue(position == city.getPosition(3, 4));
+	assertEquals(new Position(3, 4), position);
+	assertEquals(3, Position.unpackX(position.pack()));
+	assertEquals(4, Position.unpackY(position.pack()));
+	assertNotEquals(Position.pack(3, 4), Position.pack(4, 3));
+	assertTrue(Position.of(3, 4) == Position.of(3, 4));
+	assertEquals(Position.of(3, 4), position);
+	assertEquals(Position.of(100, 4), Position.of(100, 4)); // not cached, but still equal
+  }
+
+  /** Verify that the hash only depends on the elements in the city, not on the order they were added in. */
+  @Test
+  public void testGetZobristHash_independentOfOrder() {
+	long emptyHash = city.getZobristHash();
+	add(ElementType.ROAD, 0, 0);
+	add(ElementType.HOUSE, 1, 0);
+	add(ElementType.FIRE_STATION, 0, 1);
+
+	City other = new City(new Position(10, 10));
+	other.add(ElementFactory.getElement(ElementType.FIRE_STATION, new Position(0, 1)));
+	other.add(ElementFactory.getElement(ElementType.HOUSE, new Position(1, 0)));
+	other.add(ElementFactory.getElement(ElementType.ROAD, new Position(0, 0)));
+	assertEquals(city.getZobristHash(), other.getZobristHash());
+
+	other.remove(ElementFactory.getElement(ElementType.HOUSE, new Position(1, 0)));
+	other.add(ElementFactory.getElement(ElementType.HOUSE, new Position(1, 1)));
+	assertNotEquals(city.getZobristHash(), other.getZobristHash());
+
+	long hash = city.getZobristHash();
+	int mark = city.mark();
+	add(ElementType.ROAD, 0, 2);
+	city.undoTo(mark);
+	assertEquals(hash, city.getZobristHash());
+	assertNotEquals(emptyHash, hash);
+  }
+
+  /** Verify that all rotations and mirror images of a layout have the same canonical hash. */
+  @Test
+  public void testGetCanonicalHash_sameForAllOrientations() {
+	List<Symmetry> symmetries = city.getSymmetries(
+		Arrays.asList(ElementFactory.getSpec(ElementType.ROAD), ElementFactory.getSpec(ElementType.HOUSE)));
+	assertEquals(Symmetry.values().length, symmetries.size());
+
+	add(ElementType.ROAD, 0, 0);
+	add(ElementType.ROAD, 0, 1);
+	add(ElementType.HOUSE, 1, 0);
+	for (Symmetry symmetry : symmetries) {
+	  City image = city.transform(symmetry);
+	  assertEquals(city.getZobristHash(symmetry), image.getZobristHash());
+	  assertEquals(city.getCanonicalHash(symmetries), image.getCanonicalHash(symmetries));
+	  assertEquals(city.getNumViolations(), image.getNumViolations());
+	}
+	assertEquals(ElementType.HOUSE, city.transform(Symmetry.ROTATE_90).getElementAt(new Position(0, 8)).getSpec().getType());
+  }
+
+  /** Verify that only the symmetries that keep the starting city and coverage areas unchanged are used. */
+  @Test
+  public void testGetSymmetries() {
+	List<ElementSpec> specs = Arrays.asList(ElementFactory.getSpec(ElementType.ROAD), ElementFactory.getSpec(ElementType.HOUSE));
+	assertEquals(4, new City(new Position(10, 8)).getSymmetries(specs).size()); // no rotations by 90 degrees
+
+	add(ElementType.ROAD, 0, 0);
+	assertEquals(Arrays.asList(Symmetry.IDENTITY, Symmetry.TRANSPOSE), city.getSymmetries(specs));
+
+	// Coverage of a fire station is off-center in both directions, so mirroring moves it, and it
+	// isn't square, so transposing changes its shape.
+	List<ElementSpec> withFireStation = Arrays.asList(ElementFactory.getSpec(ElementType.FIRE_STATION));
+	assertEquals(Arrays.asList(Symmetry.IDENTITY), new City(new Position(10, 10)).getSymmetries(withFireStation));
+
+	// A house at (1, 4) is outside the coverage of a fire station at (0, 0), but its transposed image is inside.
+	City withServices = new City(new Position(10, 10));
+	withServices.add(ElementFactory.getElement(ElementType.FIRE_STATION, new Position(0, 0)));
+	withServices.add(ElementFactory.getElement(ElementType.POLICE_STATION, new Position(1, 1)));
+	ElementSpec house = ElementFactory.getSpec(ElementType.HOUSE);
+	assertFalse(withServices.isCoveredByRequiredServices(house, new Position(1, 4)));
+	assertTrue(withServices.isCoveredByRequiredServices(house, new Position(4, 1)));
+	assertFalse(Symmetry.TRANSPOSE.preservesCoverage(ElementFactory.getSpec(ElementType.FIRE_STATION), new Position(10, 10)));
+	ServiceSpec transposed = (ServiceSpec) Symmetry.TRANSPOSE.transform(ElementFactory.getSpec(ElementType.FIRE_STATION));
+	assertEquals(8, transposed.getCoverageWidth());
+	assertEquals(6, transposed.getCoverageHeight());
+  }
+
+  /** Verify that the incrementally kept score matches a score from scratch, and that deltas predict it. */
+  @Test
+  public void testGetScore_matchesScoreFromScratch() {
+	city.setScoreWeight(ScoreTerm.COVERAGE_ON_ROADS, -3);
+	ElementType[] types = ElementType.values();
+	List<GridElement> elements = new ArrayList<>();
+	Random random = new Random(7);
+	for (int i = 0; i < 2000; i++) {
+	  if (!elements.isEmpty() && random.nextInt(3) == 0) {
+		city.remove(elements.remove(random.nextInt(elements.size())));
+	  } else {
+		GridElement element = ElementFactory.getElement(types[random.nextInt(types.length)],
+			new Position(random.nextInt(10), random.nextInt(10)));
+		if (!city.canPlace(element.getSpec(), element.getPosition())) continue;
+		long expectedScore = city.getScore() + city.getScoreDelta(element.getSpec(), element.getPosition());
+		city.add(element);
+		elements.add(element);
+		assertEquals(expectedScore, city.getScore());
+	  }
+	  assertEquals(city.computeScoreFromScratch(), city.getScore());
+	}
+  }
+
+  /** Verify the value of every score term on a small layout. */
+  @Test
+  public void testGetScoreTerm() {
+	add(ElementType.ROAD, 0, 0);
+	add(ElementType.HOUSE, 1, 0);
+	add(ElementType.FIRE_STATION, 0, 1); // covers rows -3..4 and columns -1..4
+
+	assertEquals(1, city.getScoreTerm(ScoreTerm.HOUSES));
+	assertEquals(4, city.getScoreTerm(ScoreTerm.COVERAGE_UTILIZATION));
+	assertEquals(6 * 8 - 5 * 5, city.getScoreTerm(ScoreTerm.COVERAGE_OUTSIDE_LIMITS));
+	assertEquals(1, city.getScoreTerm(ScoreTerm.COVERAGE_ON_ROADS));
+	assertEquals(100 + 4 - 23 - 1, city.getScore());
+  }
+
+  /** Verify that roads not connected to the entrance are violations, and that removing a road can disconnect others. */
+  @Test
+  public void testGetNumDisconnectedRoads() {
+	city = new City(new Position(10, 10), new Position(0, 0));
+	add(ElementType.ROAD, 0, 0);
+	assertTrue(city.areRequirementsSatisfied()); // the road at the entrance doesn't need a neighbor
+	GridElement bridge = add(ElementType.ROAD, 0, 1);
+	add(ElementType.ROAD, 0, 2);
+	add(ElementType.ROAD, 1, 2);
+	assertEquals(0, city.getNumDisconnectedRoads());
+
+	add(ElementType.ROAD, 3, 3);
+	add(ElementType.ROAD, 3, 4);
+	assertEquals(2, city.getNumDisconnectedRoads());
+	assertEquals(2, city.getNumViolations());
+
+	city.remove(bridge);
+	assertEquals(4, city.getNumDisconnectedRoads());
+	add(ElementType.ROAD, 0, 1);
+	assertEquals(2, city.getNumDisconnectedRoads());
+	assertEquals(city.countViolationsFromScratch(), city.getNumViolations());
+  }
+
+  /** Verify that connectivity to the entrance stays correct through random road changes. */
+  @Test
+  public void testGetNumDisconnectedRoads_matchesCountFromScratch() {
+	city = new City(new Position(10, 10), new Position(0, 0));
+	List<GridElement> roads = new ArrayList<>();
+	Random random = new Random(11);
+	for (int i = 0; i < 3000; i++) {
+	  if (!roads.isEmpty() && random.nextInt(3) == 0) {
+		city.remove(roads.remove(random.nextInt(roads.size())));
+	  } else {
+		Position position = new Position(random.nextInt(10), random.nextInt(10));
+		if (city.getElementAt(position) != null) continue;
+		roads.add(add(ElementType.ROAD, position.getX(), position.getY()));
+	  }
+	  assertEquals(city.countViolationsFromScratch(), city.getNumViolations());
+	}
+  }
+
+  /** Verify that elements are only placed next to a road, at the position preferred by the heuristic. */
+  @Test
+  public void testTryToPlaceElement() {
+	ElementSpec houseSpec = ElementFactory.getElement(ElementType.HOUSE, new Position(0, 0)).getSpec();
+	assertFalse(city.tryToPlaceElement(houseSpec)); // no roads yet
+
+	for (int y = 0; y < 10; y++) {
+	  add(ElementType.ROAD, 0, y);
+	}
+	assertEquals(9, city.findPlacements(houseSpec).size()); // all along the road
+	assertEquals(new Position(1, 0), city.findPlacements(houseSpec).get(0)); // touches road and city edge
+
+	assertTrue(city.tryToPlaceElement(houseSpec));
+	assertTrue(city.tryToPlaceElement(houseSpec));
+	assertEquals(ElementType.HOUSE, city.getElementAt(new Position(1, 0)).getSpec().getType());
+	assertEquals(ElementType.HOUSE, city.getElementAt(new Position(1, 2)).getSpec().getType()); // packed next to the first
+  }
+}
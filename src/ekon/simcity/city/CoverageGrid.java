@@ -0,0 +1,75 @@
+package ekon.simcity.city;
+
+/**
+ * Coverage of the city by all services of a single type (e.g. all fire stations).
+ *
+ * Keeps the number of services covering each cell, which is updated when a service is added or
+ * removed, and a {@link BitGrid} of the covered cells, whose bits only change where a count goes
+ * from 0 to 1 or back. A change costs the size of the service's coverage area, and checking
+ * whether any cell of a footprint is covered takes a masked word test per row of the footprint.
+ *
+ * Coverage areas can reach outside of city limits. Only the part inside the city is tracked.
+ *
+ * Note: not thread-safe.
+ */
+class CoverageGrid {
+  private final int numRows, numColumns;
+  private final int[] coverageCounts; // number of services covering each cell.
+  private final BitGrid coveredCells;
+
+  CoverageGrid(int numRows, int numColumns) {
+	this.numRows = numRows;
+	this.numColumns = numColumns;
+	this.coverageCounts = new int[numRows * numColumns];
+	this.coveredCells = new BitGrid(numRows, numColumns);
+  }
+
+  // Returns the first row covered by the given service (may be outside the city).
+  static int getCoverageStartX(GridElement service) {
+	ServiceSpec spec = (ServiceSpec) service.getSpec();
+	return service.getPosition().getX() - (spec.getCoverageHeight() - spec.getHeight()) / 2;
+  }
+
+  // Returns the first column covered by the given service (may be outside the city).
+  static int getCoverageStartY(GridElement service) {
+	ServiceSpec spec = (ServiceSpec) service.getSpec();
+	return service.getPosition().getY() - (spec.getCoverageWidth() - spec.getWidth()) / 2;
+  }
+
+  void add(GridElement service) {
+	update(service, 1);
+  }
+
+  void remove(GridElement service) {
+	update(service, -1);
+  }
+
+  // Returns the number of services covering the given cell.
+  int getCoverageCount(int x, int y) {
+	return coverageCounts[x * numColumns + y];
+  }
+
+  // True if at least one cell of the footprint anchored at (x, y) is covered. The footprint must be inside the city.
+  boolean isAnyCellCovered(int x, int y, int height, int width) {
+	return coveredCells.isAnySetInRectangle(x, x + height - 1, y, y + width - 1);
+  }
+
+  private void update(GridElement service, int delta) {
+	ServiceSpec spec = (ServiceSpec) service.getSpec();
+	int startX = getCoverageStartX(service);
+	int startY = getCoverageStartY(service);
+	int fromX = Math.max(0, startX), toX = Math.min(numRows, startX + spec.getCoverageHeight());
+	int fromY = Math.max(0, startY), toY = Math.min(numColumns, startY + spec.getCoverageWidth());
+	for (int x = fromX; x < toX; x++) {
+	  int rowStart = x * numColumns;
+	  for (int y = fromY; y < toY; y++) {
+		int count = coverageCounts[rowStart + y] += delta;
+		if (count == 0) {
+		  coveredCells.clear(x, y);
+		} else if (count == 1 && delta > 0) {
+		  coveredCells.set(x, y);
+		}
+	  }
+	}
+  }
+}
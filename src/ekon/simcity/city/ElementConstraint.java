@@ -1,5 +1,7 @@
 package ekon.simcity.city;
 
 public enum ElementConstraint {
-  NEAR_ROAD, COVERED_BY_REQUIRED_SERVICE, DOES_NOT_OVERLAP;
+  NEAR_ROAD, COVERED_BY_REQUIRED_SERVICE, DOES_NOT_OVERLAP,
+  // Only checked in cities with an entrance, see City(Position, Position).
+  CONNECTED_TO_ENTRANCE;
 }
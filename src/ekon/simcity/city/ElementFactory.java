@@ -21,6 +21,21 @@ public class ElementFactory {
 	}
   }
 
+  public static ElementSpec getSpec(ElementType type) {
+	switch (type) {
+	  case ROAD:
+		return ROAD_SPEC;
+	  case HOUSE:
+		return HOUSE_SPEC;
+	  case FIRE_STATION:
+	  case POLICE_STATION:
+	  case PARK:
+		return getServiceSpec(type);
+	  default:
+		throw new IllegalArgumentException("Element type " + type + " not supported");
+	}
+  }
+
   public static GridElement getElement(ElementType type, Position position) {
 	switch (type) {
 	  case ROAD:
@@ -1,12 +1,10 @@
 package ekon.simcity.city;
 
-import java.util.Objects;
-
 import com.google.common.base.MoreObjects;
 
 public class ElementSpec {
-  private ElementType type;
-  private int width, height;
+  private final ElementType type;
+  private final int width, height;
 
   ElementSpec(ElementType type, int width, int height) {
 	this.type = type;
@@ -14,15 +12,15 @@ public class ElementSpec {
 	this.height = height;
   }
 
-  ElementType getType() {
+  public ElementType getType() {
 	return type;
   }
 
-  int getWidth() {
+  public int getWidth() {
 	return width;
   }
 
-  int getHeight() {
+  public int getHeight() {
 	return height;
   }
 
@@ -37,15 +35,15 @@ public class ElementSpec {
 
   @Override
   public int hashCode() {
-	return Objects.hash(type, width, height);
+	return (31 * type.ordinal() + width) * 31 + height;
   }
 
   @Override
   public boolean equals(Object other) {
 	if (!(other instanceof ElementSpec)) return false;
 	ElementSpec o = (ElementSpec)other;
-	return Objects.equals(getType(), o.getType())
-		&& Objects.equals(getWidth(), o.getWidth())
-		&& Objects.equals(getHeight(), o.getHeight());
+	return type == o.type
+		&& width == o.width
+		&& height == o.height;
   }
 }
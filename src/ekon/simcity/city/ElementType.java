@@ -6,7 +6,7 @@ import java.util.List;
 import com.google.common.base.MoreObjects;
 
 public enum ElementType {
-  ROAD(ElementConstraint.NEAR_ROAD, ElementConstraint.DOES_NOT_OVERLAP),
+  ROAD(ElementConstraint.NEAR_ROAD, ElementConstraint.DOES_NOT_OVERLAP, ElementConstraint.CONNECTED_TO_ENTRANCE),
   HOUSE(ElementConstraint.NEAR_ROAD, ElementConstraint.DOES_NOT_OVERLAP, ElementConstraint.COVERED_BY_REQUIRED_SERVICE),
   FIRE_STATION(ElementConstraint.NEAR_ROAD, ElementConstraint.DOES_NOT_OVERLAP),
   POLICE_STATION(ElementConstraint.NEAR_ROAD, ElementConstraint.DOES_NOT_OVERLAP),
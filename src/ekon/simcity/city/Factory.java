@@ -23,7 +23,7 @@ public class Factory extends ManufacturingFacility {
   }
 
   public int getNumEmptySlots() {
-	return 1; // TODO: implement
+	return getNumFreeSlots();
   }
 
   @Override
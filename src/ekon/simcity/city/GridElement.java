@@ -1,23 +1,21 @@
 package ekon.simcity.city;
 
-import java.util.Objects;
-
 import com.google.common.base.MoreObjects;
 
-class GridElement {
-  private ElementSpec spec;
-  private Position position;
+public class GridElement {
+  private final ElementSpec spec;
+  private final Position position;
 
   GridElement(ElementSpec spec, Position position) {
 	this.position = position;
 	this.spec = spec;
   }
 
-  ElementSpec getSpec() {
+  public ElementSpec getSpec() {
 	return spec;
   }
 
-  Position getPosition() {
+  public Position getPosition() {
 	return position;
   }
 
@@ -31,14 +29,14 @@ class GridElement {
   
   @Override
   public int hashCode() {
-	return Objects.hash(position, spec);
+	return 31 * position.hashCode() + spec.hashCode();
   }
   
   @Override
   public boolean equals(Object other) {
 	if (!(other instanceof GridElement)) return false;
 	GridElement o = (GridElement)other;
-	return Objects.equals(getPosition(), o.getPosition())
-		&& Objects.equals(getSpec(), o.getSpec());
+	return position.equals(o.position)
+		&& spec.equals(o.spec);
   }
 }
@@ -1,11 +1,16 @@
 package ekon.simcity.city;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Objects;
 
 import com.google.common.base.MoreObjects;
 
+import ekon.simcity.metrics.EnumCounter;
+import ekon.simcity.metrics.Metrics;
+
 public class ManufacturingFacility {
   public enum Type {
 	  FACTORY,
@@ -18,13 +23,22 @@ public class ManufacturingFacility {
 	  FASHION_STORE;
 	}
 
+  private static final EnumCounter<Type> SLOTS_RESERVED = Metrics.newEnumCounter("manufacturing.slotsReserved", Type.class);
+
   private final Type type;
   private List<Slot> slots; // Note: not thread-safe
+  // Free slots by index, so the lowest free slot is found with a scan of a word per 64 slots, and
+  // their number.
+  private final BitSet freeSlots;
+  private int numFreeSlots;
 
   public ManufacturingFacility(Type type, int capacity) {
 	this.type = type;
 	this.slots = new ArrayList<>(capacity);
-	for (int i = 0; i < capacity; i++) slots.add(new Slot());
+	this.freeSlots = new BitSet(capacity);
+	for (int i = 0; i < capacity; i++) slots.add(new Slot(this, i));
+	freeSlots.set(0, capacity);
+	numFreeSlots = capacity;
   }
 
   public Type getType() {
@@ -35,34 +49,67 @@ public class ManufacturingFacility {
     return slots;
   }
   
-  private List<Slot> getFreeSlots() {
-	List<Slot> freeSlots = new ArrayList<>();
-	for (Slot slot : slots) {
-	  if (!slot.hasItem()) freeSlots.add(slot);
-	}
-	return freeSlots;
-  }
-
   public int getNumFreeSlots() {
-	return getFreeSlots().size();
+	return numFreeSlots;
   }
   
   void addSlot() {
-	slots.add(new Slot());
+	int slotIndex = slots.size();
+	slots.add(new Slot(this, slotIndex));
+	slotFreed(slotIndex);
   }
 
   // TODO: not sure if this should be overridden or partially overridden so that we can reuse the check here.
   public void makeItems(Item... items) {
 	// Verify empty slots exist.
-	if (getNumFreeSlots() < items.length) {
-	  throw new IllegalStateException("Not enough free slots to make [" + items + "] in s " + this);
+	if (numFreeSlots < items.length) {
+	  throw new IllegalStateException("Not enough free slots to make " + Arrays.toString(items) + " in " + this);
 	}
 	
+	// Slots are filled lowest index first.
+	int slotIndex = -1;
 	for (Item item : items) {
-	  getFreeSlots().get(0).manufactureItem(item);
+	  slotIndex = freeSlots.nextSetBit(slotIndex + 1);
+	  slots.get(slotIndex).manufactureItem(item);
+	}
+	if (Metrics.ENABLED) SLOTS_RESERVED.add(type, items.length);
+  }
+
+  /** Puts the given number of the item in production, in that many free slots. */
+  public void reserve(Item item, int count) {
+	if (count < 0) throw new IllegalArgumentException("Cannot reserve " + count + " slots for " + item);
+	if (numFreeSlots < count) {
+	  throw new IllegalStateException("Not enough free slots to make " + count + " " + item + " in " + this);
+	}
+
+	// Same as makeItems, but the free slots are walked once and counted once.
+	int slotIndex = -1;
+	for (int i = 0; i < count; i++) {
+	  slotIndex = freeSlots.nextSetBit(slotIndex + 1);
+	  slots.get(slotIndex).item = item; // the slot is free, so it's empty
+	  freeSlots.clear(slotIndex);
+	  itemAdded(slotIndex);
 	}
+	numFreeSlots -= count;
+	if (Metrics.ENABLED) SLOTS_RESERVED.add(type, count);
+  }
+
+  // Called by a slot when an item is put in it, however that happens.
+  void slotFilled(int slotIndex) {
+	freeSlots.clear(slotIndex);
+	numFreeSlots--;
+	itemAdded(slotIndex);
+  }
+
+  // Called by a slot when its item is picked up.
+  void slotFreed(int slotIndex) {
+	freeSlots.set(slotIndex);
+	numFreeSlots++;
   }
 
+  // Called after an item is put in the slot with the given index, for facilities that keep track of the order.
+  void itemAdded(int slotIndex) {}
+
   @Override
   public String toString() {
 	return MoreObjects.toStringHelper(this)
@@ -85,14 +132,25 @@ public class ManufacturingFacility {
   }
 
   public static class Slot {
+	private static final long NOT_STARTED = -1;
+
+	private final ManufacturingFacility facility;
+	private final int index; // in the facility's slots
 	private Item item;
-//	private final long startTime; // TODO: not sure about using a long, probably better to use some time class.
+	// Minute the item started being made, in simulated time. Items wait in their slots until then.
+	private long startMinute = NOT_STARTED;
+
+	Slot(ManufacturingFacility facility, int index) {
+	  this.facility = facility;
+	  this.index = index;
+	}
 
 	public void manufactureItem(Item itemToManufacture) {
 	  if (item != null) {
 		throw new IllegalStateException("Cannot manufacture " + itemToManufacture + " because something is already being manufatured in this slot " + item);
 	  }
 	  this.item = itemToManufacture;
+	  facility.slotFilled(index);
 	}
 	
 	public boolean hasItem() {
@@ -104,5 +162,35 @@ public class ManufacturingFacility {
 	  if (item == null) throw new IllegalStateException("No item in slot. Please call hasItem first to check.");
  	  return item;
 	}
+
+	/** Returns true if the item in this slot has started being made, see {@link ProductionSimulator}. */
+	public boolean isStarted() {
+	  return startMinute != NOT_STARTED;
+	}
+
+	public long getStartMinute() {
+	  if (!isStarted()) throw new IllegalStateException("Item in slot has not started. Please call isStarted first to check.");
+	  return startMinute;
+	}
+
+	/** Returns the minute the item in this slot is ready to be picked up. */
+	public long getFinishMinute() {
+	  return getStartMinute() + item.getMinutesToMake();
+	}
+
+	void start(long minute) {
+	  if (item == null) throw new IllegalStateException("No item in slot to start");
+	  if (isStarted()) throw new IllegalStateException("Item " + item + " already started at minute " + startMinute);
+	  this.startMinute = minute;
+	}
+
+	// Empties the slot, returning the item that was made in it.
+	Item pickUpItem() {
+	  Item pickedUpItem = getItem();
+	  item = null;
+	  startMinute = NOT_STARTED;
+	  facility.slotFreed(index);
+	  return pickedUpItem;
+	}
   }
 }
@@ -0,0 +1,61 @@
+package ekon.simcity.city;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+public class ManufacturingFacilityTest {
+
+  /** Verify that free slots are counted however items are put in and picked up. */
+  @Test
+  public void testGetNumFreeSlots() {
+	ManufacturingFacility facility = new ManufacturingFacility(ManufacturingFacility.Type.FACTORY, 4);
+	facility.reserve(Item.METAL, 2);
+	assertEquals(2, facility.getNumFreeSlots());
+	assertEquals(Item.METAL, facility.getSlots().get(0).getItem());
+	assertEquals(Item.METAL, facility.getSlots().get(1).getItem());
+
+	facility.getSlots().get(3).manufactureItem(Item.WOOD);
+	assertEquals(1, facility.getNumFreeSlots());
+	facility.makeItems(Item.PLASTIC);
+	assertEquals(0, facility.getNumFreeSlots());
+	assertEquals(Item.PLASTIC, facility.getSlots().get(2).getItem());
+
+	// The lowest free slot is filled first, whichever was picked up last.
+	facility.getSlots().get(1).pickUpItem();
+	facility.getSlots().get(3).pickUpItem();
+	assertEquals(2, facility.getNumFreeSlots());
+	assertFalse(facility.getSlots().get(1).hasItem());
+	facility.reserve(Item.SEEDS, 1);
+	assertEquals(Item.SEEDS, facility.getSlots().get(1).getItem());
+  }
+
+  /** Verify that slots are filled lowest index first after a slot was filled directly. */
+  @Test
+  public void testMakeItems_fillsLowestFreeSlot() {
+	ManufacturingFacility facility = new ManufacturingFacility(ManufacturingFacility.Type.FACTORY, 4);
+	facility.getSlots().get(3).manufactureItem(Item.WOOD);
+	facility.makeItems(Item.METAL, Item.PLASTIC);
+	assertEquals(Item.METAL, facility.getSlots().get(0).getItem());
+	assertEquals(Item.PLASTIC, facility.getSlots().get(1).getItem());
+	assertFalse(facility.getSlots().get(2).hasItem());
+  }
+
+  /** Verify that a batch skips the slots that are already taken. */
+  @Test
+  public void testReserve_skipsTakenSlots() {
+	ManufacturingFacility facility = new ManufacturingFacility(ManufacturingFacility.Type.FACTORY, 4);
+	facility.getSlots().get(1).manufactureItem(Item.WOOD);
+	facility.reserve(Item.METAL, 2);
+	assertEquals(Item.METAL, facility.getSlots().get(0).getItem());
+	assertEquals(Item.WOOD, facility.getSlots().get(1).getItem());
+	assertEquals(Item.METAL, facility.getSlots().get(2).getItem());
+	assertEquals(1, facility.getNumFreeSlots());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testReserve_notEnoughFreeSlots() {
+	new ManufacturingFacility(ManufacturingFacility.Type.FACTORY, 2).reserve(Item.METAL, 3);
+  }
+}
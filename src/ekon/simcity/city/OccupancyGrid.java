@@ -0,0 +1,134 @@
+package ekon.simcity.city;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of which cells of the city are taken and by which element.
+ *
+ * Every element placed in the grid gets a small integer id. The grid keeps a bit per cell for
+ * fast footprint overlap tests and the id of the occupying element per cell for constant time
+ * "what is at (x, y)" lookups.
+ *
+ * Note: not thread-safe.
+ */
+class OccupancyGrid {
+  static final int EMPTY = -1;
+
+  private final BitGrid takenCells;
+  private final int[] elementIds; // id of the element taking up each cell, EMPTY if the cell is free.
+  private GridElement[] elements; // indexed by element id.
+  private int[] freeIds; // ids of removed elements that can be reused.
+  private int numFreeIds;
+  private int nextId;
+  private int numTakenCells;
+
+  OccupancyGrid(int numRows, int numColumns) {
+	this.takenCells = new BitGrid(numRows, numColumns);
+	this.elementIds = new int[numRows * numColumns];
+	Arrays.fill(elementIds, EMPTY);
+	this.elements = new GridElement[16];
+	this.freeIds = new int[16];
+  }
+
+  int getNumRows() {
+	return takenCells.getNumRows();
+  }
+
+  int getNumColumns() {
+	return takenCells.getNumColumns();
+  }
+
+  // True if the footprint anchored at (x, y) fits in the grid.
+  boolean isInside(int x, int y, int height, int width) {
+	return x >= 0 && y >= 0 && x + height <= getNumRows() && y + width <= getNumColumns();
+  }
+
+  // True if no cell in the footprint anchored at (x, y) is taken. The footprint must be inside the grid.
+  boolean isFree(int x, int y, int height, int width) {
+	return !takenCells.isAnySetInRectangle(x, x + height - 1, y, y + width - 1);
+  }
+
+  int getNumTakenCells() {
+	return numTakenCells;
+  }
+
+  boolean isTaken(int x, int y) {
+	return takenCells.get(x, y);
+  }
+
+  // Returns the id of the element at the given cell, or EMPTY if the cell is free or outside the grid.
+  int getElementId(int x, int y) {
+	if (!takenCells.isInside(x, y)) return EMPTY;
+	return elementIds[x * getNumColumns() + y];
+  }
+
+  GridElement getElement(int id) {
+	return elements[id];
+  }
+
+  // Returns the element at the given cell, or null if there is none.
+  GridElement getElementAt(int x, int y) {
+	int id = getElementId(x, y);
+	return id == EMPTY ? null : elements[id];
+  }
+
+  // Returns the first element found taking up a cell of the given footprint, or null if there is none.
+  GridElement findOverlappingElement(int x, int y, int height, int width) {
+	for (int i = Math.max(0, x); i < Math.min(getNumRows(), x + height); i++) {
+	  for (int j = Math.max(0, y); j < Math.min(getNumColumns(), y + width); j++) {
+		GridElement element = getElementAt(i, j);
+		if (element != null) return element;
+	  }
+	}
+	return null;
+  }
+
+  // True if every cell of the element's footprint is taken by the element with the given id.
+  boolean isOwnedBy(int id, int x, int y, int height, int width) {
+	for (int i = x; i < x + height; i++) {
+	  for (int j = y; j < y + width; j++) {
+		if (getElementId(i, j) != id) return false;
+	  }
+	}
+	return true;
+  }
+
+  // Takes up the cells of the element's footprint and returns the id assigned to the element.
+  // The caller is responsible for making sure the footprint is inside the grid and free.
+  int occupy(GridElement element) {
+	int id = numFreeIds > 0 ? freeIds[--numFreeIds] : nextId++;
+	if (id == elements.length) elements = Arrays.copyOf(elements, id * 2);
+	elements[id] = element;
+
+	int x = element.getPosition().getX();
+	int y = element.getPosition().getY();
+	ElementSpec spec = element.getSpec();
+	takenCells.setRectangle(x, x + spec.getHeight() - 1, y, y + spec.getWidth() - 1);
+	fillIds(x, y, spec, id);
+	numTakenCells += spec.getHeight() * spec.getWidth();
+	return id;
+  }
+
+  // Frees up the cells taken by the element with the given id.
+  void release(int id) {
+	GridElement element = elements[id];
+	int x = element.getPosition().getX();
+	int y = element.getPosition().getY();
+	ElementSpec spec = element.getSpec();
+	takenCells.clearRectangle(x, x + spec.getHeight() - 1, y, y + spec.getWidth() - 1);
+	fillIds(x, y, spec, EMPTY);
+	numTakenCells -= spec.getHeight() * spec.getWidth();
+
+	elements[id] = null;
+	if (numFreeIds == freeIds.length) freeIds = Arrays.copyOf(freeIds, numFreeIds * 2);
+	freeIds[numFreeIds++] = id;
+  }
+
+  private void fillIds(int x, int y, ElementSpec spec, int id) {
+	int numColumns = getNumColumns();
+	for (int i = x; i < x + spec.getHeight(); i++) {
+	  int rowStart = i * numColumns;
+	  Arrays.fill(elementIds, rowStart + y, rowStart + y + spec.getWidth(), id);
+	}
+  }
+}
@@ -0,0 +1,42 @@
+package ekon.simcity.city;
+
+/**
+ * Ranks candidate positions for placing a new element in a city. Higher scores are better.
+ *
+ * Candidates with the same score are ordered top to bottom, then left to right.
+ */
+public interface PlacementHeuristic {
+  int score(City city, ElementSpec spec, Position position);
+
+  /** Prefers the top-most, then left-most, position. */
+  public static class TopLeft implements PlacementHeuristic {
+	@Override
+	public int score(City city, ElementSpec spec, Position position) {
+	  return 0;
+	}
+  }
+
+  /**
+   * Prefers positions where the element touches the most taken cells and city edges, which packs
+   * elements tightly and keeps the remaining free space in large blocks.
+   */
+  public static class MostContact implements PlacementHeuristic {
+	@Override
+	public int score(City city, ElementSpec spec, Position position) {
+	  int x = position.getX();
+	  int y = position.getY();
+	  int maxX = x + spec.getHeight() - 1;
+	  int maxY = y + spec.getWidth() - 1;
+	  int contact = 0;
+	  for (int i = y; i <= maxY; i++) {
+		if (city.isTakenOrOutside(x - 1, i)) contact++;
+		if (city.isTakenOrOutside(maxX + 1, i)) contact++;
+	  }
+	  for (int i = x; i <= maxX; i++) {
+		if (city.isTakenOrOutside(i, y - 1)) contact++;
+		if (city.isTakenOrOutside(i, maxY + 1)) contact++;
+	  }
+	  return contact;
+	}
+  }
+}
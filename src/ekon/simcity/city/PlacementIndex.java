@@ -0,0 +1,72 @@
+package ekon.simcity.city;
+
+/**
+ * Index of the free space in the city used for placing new elements.
+ *
+ * For every cell it keeps the length of the run of free cells starting at that cell and going
+ * right along its row. A footprint of height h and width w fits at (x, y) if the free runs at
+ * (x, y) .. (x + h - 1, y) are all at least w long, which takes h lookups no matter how wide the
+ * footprint is. Adding or removing an element only updates the rows it takes up, from its right
+ * edge to the previous taken cell on the left.
+ *
+ * Note: not thread-safe.
+ */
+class PlacementIndex {
+  private final int numRows, numColumns;
+  private final int[] freeRunLengths;
+
+  PlacementIndex(int numRows, int numColumns) {
+	this.numRows = numRows;
+	this.numColumns = numColumns;
+	this.freeRunLengths = new int[numRows * numColumns];
+	for (int x = 0; x < numRows; x++) {
+	  for (int y = 0; y < numColumns; y++) {
+		freeRunLengths[x * numColumns + y] = numColumns - y;
+	  }
+	}
+  }
+
+  // True if a footprint of the given size anchored at (x, y) is inside the city and all of its cells are free.
+  boolean fits(int x, int y, int height, int width) {
+	if (x < 0 || y < 0 || x + height > numRows || y + width > numColumns) return false;
+	for (int i = x; i < x + height; i++) {
+	  if (freeRunLengths[i * numColumns + y] < width) return false;
+	}
+	return true;
+  }
+
+  // Returns the number of free cells from (x, y) going right, including (x, y) itself.
+  int getFreeRunLength(int x, int y) {
+	return freeRunLengths[x * numColumns + y];
+  }
+
+  void occupy(int x, int y, int height, int width) {
+	for (int i = x; i < x + height; i++) {
+	  int rowStart = i * numColumns;
+	  for (int j = y; j < y + width; j++) {
+		freeRunLengths[rowStart + j] = 0;
+	  }
+	  updateRunsToTheLeft(rowStart, y - 1, 0);
+	}
+  }
+
+  void release(int x, int y, int height, int width) {
+	int maxY = y + width - 1;
+	for (int i = x; i < x + height; i++) {
+	  int rowStart = i * numColumns;
+	  int run = maxY + 1 < numColumns ? freeRunLengths[rowStart + maxY + 1] : 0;
+	  for (int j = maxY; j >= y; j--) {
+		freeRunLengths[rowStart + j] = ++run;
+	  }
+	  updateRunsToTheLeft(rowStart, y - 1, run);
+	}
+  }
+
+  // Recomputes the free runs of the free cells left of (and including) column y, given the run
+  // length of the cell right of y.
+  private void updateRunsToTheLeft(int rowStart, int y, int run) {
+	for (int j = y; j >= 0 && freeRunLengths[rowStart + j] != 0; j--) {
+	  freeRunLengths[rowStart + j] = ++run;
+	}
+  }
+}
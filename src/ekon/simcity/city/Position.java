@@ -1,25 +1,60 @@
 package ekon.simcity.city;
 
-import java.util.Objects;
-
 import com.google.common.base.MoreObjects;
 
 public class Position {
-  private int x, y;
+  // Shared positions for small coordinates, created on first use. See of.
+  private static final int NUM_CACHED = 64;
+  private static final Position[] CACHE = new Position[NUM_CACHED * NUM_CACHED];
+
+  private final int x, y;
 
-  public Position(int x, int y) {
+  // Positions of cells are created by City.getPosition, which returns one instance per cell.
+  Position(int x, int y) {
 	this.x = x;
 	this.y = y;
   }
 
-  int getX() {
+  // Returns a position that isn't a cell of a particular city, such as city limits. Like
+  // Integer.valueOf, small coordinates always return the same instance. Cells of a city should
+  // come from City.getPosition instead.
+  public static Position of(int x, int y) {
+	if (x < 0 || y < 0 || x >= NUM_CACHED || y >= NUM_CACHED) return new Position(x, y);
+	// Positions are immutable, so a thread that sees null just creates an equal one.
+	Position position = CACHE[x * NUM_CACHED + y];
+	if (position == null) {
+	  position = new Position(x, y);
+	  CACHE[x * NUM_CACHED + y] = position;
+	}
+	return position;
+  }
+
+  public int getX() {
 	return x;
   }
 
-  int getY() {
+  public int getY() {
 	return y;
   }
 
+  // Packs coordinates into a single long, x in the high and y in the low 32 bits,
+  // for code that wants to keep positions without creating Position objects.
+  public static long pack(int x, int y) {
+	return (long) x << 32 | (y & 0xffffffffL);
+  }
+
+  public static int unpackX(long packed) {
+	return (int) (packed >> 32);
+  }
+
+  public static int unpackY(long packed) {
+	return (int) packed;
+  }
+
+  public long pack() {
+	return pack(x, y);
+  }
+
   @Override
   public String toString() {
 	return MoreObjects.toStringHelper(this)
@@ -30,14 +65,13 @@ public class Position {
   
   @Override
   public int hashCode() {
-	return Objects.hash(x, y);
+	return 31 * x + y;
   }
   
   @Override
   public boolean equals(Object other) {
 	if (!(other instanceof Position)) return false;
 	Position o = (Position)other;
-	return Objects.equals(getX(), o.getX())
-		&& Objects.equals(getY(), o.getY());
+	return x == o.x && y == o.y;
   }
 }
@@ -0,0 +1,260 @@
+package ekon.simcity.city;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.MoreObjects;
+
+import ekon.simcity.city.ManufacturingFacility.Slot;
+
+/**
+ * Discrete-event simulation of a {@link ProductionRunner} over time, to compare production
+ * strategies by the revenue they make per hour instead of by the slots they fill.
+ *
+ * Factories make all their items in parallel, while a {@link Store} makes the items in its queue one
+ * at a time. An item starts once its ingredients have been picked up, and the items queued behind it
+ * in a store wait for it. Finished items stay in their slots until
+ * they're picked up, every pickupIntervalMinutes or as soon as they're finished if that's 0. Picked
+ * up items are kept if an item waiting to start needs them, and sold at their max selling price
+ * otherwise. After every pickup, the strategy fills the free slots again.
+ *
+ * Items already in the slots when the simulation starts are assumed to have their ingredients.
+ *
+ * Events are kept in a binary heap of longs holding the minute and the slot of the event, so that
+ * processing an event doesn't allocate anything.
+ *
+ * Note: not thread-safe. Only the strategy may change the production runner while it's simulated,
+ * and only by putting items in free slots.
+ */
+public class ProductionSimulator {
+  public static final int MINUTES_PER_DAY = 24 * 60;
+
+  private static final Item[] ITEMS = Item.values();
+  // Events are (minute << SLOT_BITS) | slot index, where the highest index stands for a pickup.
+  private static final int SLOT_BITS = 20;
+  private static final int PICKUP = (1 << SLOT_BITS) - 1;
+
+  private final ProductionRunner productionRunner;
+  private final ProductionStrategy strategy;
+  private final int pickupIntervalMinutes;
+
+  // Slots of all facilities, the slots of facility f being firstSlots[f] to firstSlots[f + 1] - 1.
+  private final Slot[] slots;
+  private final int[] firstSlots;
+  private final int[] facilityOfSlots;
+  private final Store[] stores; // by facility, null for facilities making items in parallel
+  // Items put in their slots that haven't started yet, and those of them that have their ingredients.
+  private final boolean[] isWaiting;
+  private final boolean[] hasIngredients;
+
+  // Items picked up and kept for items waiting to start, and the ingredients those items need.
+  private final int[] storage = new int[ITEMS.length];
+  private final int[] ingredientDemand = new int[ITEMS.length];
+
+  private boolean isStarted;
+  private long[] events = new long[16];
+  private int numEvents;
+  private long minute;
+  private long eventsProcessed;
+  private long itemsSold;
+  private long revenue;
+
+  /**
+   * @param productionRunner facilities to simulate, possibly with items already in production
+   * @param strategy fills the free slots at the start and after every pickup
+   * @param pickupIntervalMinutes minutes between pickups of finished items, 0 to pick them up as
+   *     soon as they're finished
+   */
+  public ProductionSimulator(ProductionRunner productionRunner, ProductionStrategy strategy, int pickupIntervalMinutes) {
+	if (pickupIntervalMinutes < 0) throw new IllegalArgumentException("Pickup interval must not be negative, was " + pickupIntervalMinutes);
+	this.productionRunner = productionRunner;
+	this.strategy = strategy;
+	this.pickupIntervalMinutes = pickupIntervalMinutes;
+
+	// Facilities in type order, so that the same production runner is always simulated the same way.
+	List<ManufacturingFacility> facilities = new ArrayList<>();
+	for (ManufacturingFacility.Type type : ManufacturingFacility.Type.values()) {
+	  if (productionRunner.hasFacility(type)) facilities.add(productionRunner.getFacility(type));
+	}
+	List<Slot> allSlots = new ArrayList<>();
+	firstSlots = new int[facilities.size() + 1];
+	stores = new Store[facilities.size()];
+	for (int f = 0; f < facilities.size(); f++) {
+	  firstSlots[f] = allSlots.size();
+	  allSlots.addAll(facilities.get(f).getSlots());
+	  if (facilities.get(f) instanceof Store) stores[f] = (Store) facilities.get(f);
+	}
+	firstSlots[facilities.size()] = allSlots.size();
+	if (allSlots.size() >= PICKUP) throw new IllegalArgumentException("Too many slots to simulate: " + allSlots.size());
+	slots = allSlots.toArray(new Slot[allSlots.size()]);
+	facilityOfSlots = new int[slots.length];
+	for (int f = 0; f < facilities.size(); f++) {
+	  Arrays.fill(facilityOfSlots, firstSlots[f], firstSlots[f + 1], f);
+	}
+	isWaiting = new boolean[slots.length];
+	hasIngredients = new boolean[slots.length];
+
+	for (int s = 0; s < slots.length; s++) {
+	  if (!slots[s].hasItem()) continue;
+	  if (slots[s].isStarted()) {
+		throw new IllegalArgumentException("Slot already started making " + slots[s].getItem() + ", keep running its simulator instead");
+	  }
+	  isWaiting[s] = true;
+	  hasIngredients[s] = true;
+	}
+	if (pickupIntervalMinutes > 0) pushEvent(pickupIntervalMinutes, PICKUP);
+  }
+
+  /** Simulates the given number of minutes from where the last run stopped. */
+  public void run(long minutes) {
+	if (!isStarted) {
+	  isStarted = true;
+	  fillFreeSlots();
+	}
+	long endMinute = minute + minutes;
+	while (numEvents > 0 && events[0] >>> SLOT_BITS <= endMinute) {
+	  long event = popEvent();
+	  minute = event >>> SLOT_BITS;
+	  int s = (int) (event & PICKUP);
+	  eventsProcessed++;
+	  if (s == PICKUP) {
+		for (int i = 0; i < slots.length; i++) {
+		  if (slots[i].hasItem() && slots[i].isStarted() && slots[i].getFinishMinute() <= minute) pickUp(i);
+		}
+		pushEvent(minute + pickupIntervalMinutes, PICKUP);
+		fillFreeSlots();
+	  } else {
+		// Stores go on to their next item even if the finished one isn't picked up yet.
+		int f = facilityOfSlots[s];
+		if (stores[f] != null) stores[f].finishActiveItem();
+		if (pickupIntervalMinutes == 0) {
+		  pickUp(s);
+		  fillFreeSlots();
+		} else {
+		  startWaitingItems();
+		}
+	  }
+	}
+	minute = endMinute;
+  }
+
+  private void pickUp(int s) {
+	Item item = slots[s].pickUpItem();
+	int o = item.ordinal();
+	if (storage[o] < ingredientDemand[o]) {
+	  storage[o]++;
+	} else {
+	  itemsSold++;
+	  revenue += item.getMaxSellingPrice();
+	}
+  }
+
+  // Lets the strategy fill the free slots, then starts whatever can be started.
+  private void fillFreeSlots() {
+	strategy.fillFreeSlots(productionRunner);
+	for (int s = 0; s < slots.length; s++) {
+	  if (slots[s].hasItem() && !slots[s].isStarted() && !isWaiting[s]) {
+		isWaiting[s] = true;
+		hasIngredients[s] = false;
+		Item item = slots[s].getItem();
+		for (int i = 0; i < BillOfMaterials.getNumIngredients(item); i++) {
+		  ingredientDemand[BillOfMaterials.getIngredient(item, i)] += BillOfMaterials.getIngredientQuantity(item, i);
+		}
+	  }
+	}
+	startWaitingItems();
+  }
+
+  private void startWaitingItems() {
+	for (int f = 0; f < stores.length; f++) {
+	  if (stores[f] == null) {
+		for (int s = firstSlots[f]; s < firstSlots[f + 1]; s++) {
+		  if (isWaiting[s] && canStart(s)) start(s);
+		}
+	  } else if (stores[f].getQueueSize() > 0) {
+		int s = firstSlots[f] + stores[f].getQueuedSlotIndex(0);
+		if (isWaiting[s] && canStart(s)) start(s);
+	  }
+	}
+  }
+
+  private boolean canStart(int s) {
+	if (hasIngredients[s]) return true;
+	Item item = slots[s].getItem();
+	for (int i = 0; i < BillOfMaterials.getNumIngredients(item); i++) {
+	  if (storage[BillOfMaterials.getIngredient(item, i)] < BillOfMaterials.getIngredientQuantity(item, i)) return false;
+	}
+	return true;
+  }
+
+  private void start(int s) {
+	if (!hasIngredients[s]) {
+	  Item item = slots[s].getItem();
+	  for (int i = 0; i < BillOfMaterials.getNumIngredients(item); i++) {
+		storage[BillOfMaterials.getIngredient(item, i)] -= BillOfMaterials.getIngredientQuantity(item, i);
+		ingredientDemand[BillOfMaterials.getIngredient(item, i)] -= BillOfMaterials.getIngredientQuantity(item, i);
+	  }
+	}
+	isWaiting[s] = false;
+	slots[s].start(minute);
+	pushEvent(slots[s].getFinishMinute(), s);
+  }
+
+  private void pushEvent(long eventMinute, int s) {
+	if (numEvents == events.length) events = Arrays.copyOf(events, 2 * events.length);
+	long event = (eventMinute << SLOT_BITS) | s;
+	int i = numEvents++;
+	while (i > 0 && events[(i - 1) / 2] > event) {
+	  events[i] = events[(i - 1) / 2];
+	  i = (i - 1) / 2;
+	}
+	events[i] = event;
+  }
+
+  private long popEvent() {
+	long first = events[0];
+	long last = events[--numEvents];
+	int i = 0;
+	while (2 * i + 1 < numEvents) {
+	  int child = 2 * i + 1;
+	  if (child + 1 < numEvents && events[child + 1] < events[child]) child++;
+	  if (events[child] >= last) break;
+	  events[i] = events[child];
+	  i = child;
+	}
+	events[i] = last;
+	return first;
+  }
+
+  public long getMinute() {
+	return minute;
+  }
+
+  public long getEventsProcessed() {
+	return eventsProcessed;
+  }
+
+  public long getItemsSold() {
+	return itemsSold;
+  }
+
+  public long getRevenue() {
+	return revenue;
+  }
+
+  /** Returns the revenue per hour of simulated time so far. */
+  public double getRevenuePerHour() {
+	return minute == 0 ? 0 : revenue * 60.0 / minute;
+  }
+
+  @Override
+  public String toString() {
+	return MoreObjects.toStringHelper(this)
+		.add("minute", minute)
+		.add("eventsProcessed", eventsProcessed)
+		.add("itemsSold", itemsSold)
+		.add("revenue", revenue)
+		.toString();
+  }
+}
@@ -0,0 +1,90 @@
+package ekon.simcity.city;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProductionSimulatorTest {
+
+  private ProductionRunner prodRunner;
+
+  @Before
+  public void setUp() {
+	prodRunner = new ProductionRunner();
+	prodRunner.addFacility(new Factory(FactoryType.SMALL_FACTORY));
+  }
+
+  /** Verify that factories make items in parallel and free slots are filled again after pickups. */
+  @Test
+  public void testRun_factoryInParallel() {
+	ProductionSimulator simulator = new ProductionSimulator(prodRunner, new MetalStrategy(), 0 /* pickupIntervalMinutes */);
+	simulator.run(10);
+
+	// Three metals a minute, each one picked up and sold as soon as it's done.
+	assertEquals(30, simulator.getItemsSold());
+	assertEquals(300, simulator.getRevenue());
+	assertEquals(1800.0, simulator.getRevenuePerHour(), 0.0);
+  }
+
+  /** Verify that finished items wait in their slots until the next pickup. */
+  @Test
+  public void testRun_pickupInterval() {
+	ProductionSimulator simulator = new ProductionSimulator(prodRunner, new MetalStrategy(), 5 /* pickupIntervalMinutes */);
+	simulator.run(12);
+
+	assertEquals(6, simulator.getItemsSold()); // picked up at minutes 5 and 10
+	assertEquals(12, simulator.getMinute());
+	for (ManufacturingFacility.Slot slot : prodRunner.getFacility(ManufacturingFacility.Type.FACTORY).getSlots()) {
+	  assertEquals(10, slot.getStartMinute());
+	}
+  }
+
+  /**
+   * Verify that stores make one item at a time, each once its ingredients are picked up, and that
+   * ingredients are kept instead of sold.
+   */
+  @Test
+  public void testRun_storeInSequence() {
+	prodRunner.addFacility(new Store(ManufacturingFacility.Type.BUILDING_SUPPLY_STORE, 2));
+	ProductionSimulator simulator = new ProductionSimulator(prodRunner, new NailsStrategy(), 0 /* pickupIntervalMinutes */);
+
+	// The first nails wait a minute for their metal, then take 5 minutes.
+	simulator.run(5);
+	assertEquals(0, simulator.getItemsSold());
+	simulator.run(2);
+	assertEquals(1, simulator.getItemsSold());
+	assertEquals(80, simulator.getRevenue());
+
+	// The second nails got their metal at minute 2, but only start when the first ones are done.
+	simulator.run(3);
+	assertEquals(1, simulator.getItemsSold());
+	simulator.run(1);
+	assertEquals(2, simulator.getItemsSold());
+	assertEquals(160, simulator.getRevenue());
+  }
+
+  // Makes metal in every free factory slot.
+  private static class MetalStrategy implements ProductionStrategy {
+	@Override
+	public void fillFreeSlots(ProductionRunner productionRunner) {
+	  ManufacturingFacility factory = productionRunner.getFacility(ManufacturingFacility.Type.FACTORY);
+	  while (factory.getNumFreeSlots() > 0) {
+		factory.makeItems(Item.METAL);
+	  }
+	}
+  }
+
+  // Makes nails, and the two metals they take, while there are slots for them.
+  private static class NailsStrategy implements ProductionStrategy {
+	@Override
+	public void fillFreeSlots(ProductionRunner productionRunner) {
+	  ManufacturingFacility factory = productionRunner.getFacility(ManufacturingFacility.Type.FACTORY);
+	  ManufacturingFacility store = productionRunner.getFacility(ManufacturingFacility.Type.BUILDING_SUPPLY_STORE);
+	  while (factory.getNumFreeSlots() >= 2 && store.getNumFreeSlots() > 0) {
+		factory.makeItems(Item.METAL, Item.METAL);
+		store.makeItems(Item.NAILS);
+	  }
+	}
+  }
+}
@@ -0,0 +1,8 @@
+package ekon.simcity.city;
+
+/** Decides what to make in the free slots of a {@link ProductionRunner}, see {@link ProductionSimulator}. */
+public interface ProductionStrategy {
+
+  /** Puts items in production in some of the free slots, with {@link ManufacturingFacility#makeItems}. */
+  void fillFreeSlots(ProductionRunner productionRunner);
+}
@@ -0,0 +1,72 @@
+package ekon.simcity.city;
+
+/**
+ * Index of the cells of the city covered by roads.
+ *
+ * Roads are kept in two bit planes: one laid out row by row and one laid out column by column.
+ * That way both horizontal and vertical edges of an element are a contiguous run of bits and
+ * checking whether a whole edge is covered by road is a single masked word comparison (for edges
+ * up to 64 cells long), no matter how many roads there are in the city.
+ *
+ * Note: not thread-safe.
+ */
+class RoadIndex {
+  private final BitGrid roadsByRow;
+  private final BitGrid roadsByColumn;
+
+  RoadIndex(int numRows, int numColumns) {
+	this.roadsByRow = new BitGrid(numRows, numColumns);
+	this.roadsByColumn = new BitGrid(numColumns, numRows);
+  }
+
+  void add(GridElement road) {
+	int x = road.getPosition().getX();
+	int y = road.getPosition().getY();
+	ElementSpec spec = road.getSpec();
+	int maxX = x + spec.getHeight() - 1;
+	int maxY = y + spec.getWidth() - 1;
+	roadsByRow.setRectangle(x, maxX, y, maxY);
+	roadsByColumn.setRectangle(y, maxY, x, maxX);
+  }
+
+  void remove(GridElement road) {
+	int x = road.getPosition().getX();
+	int y = road.getPosition().getY();
+	ElementSpec spec = road.getSpec();
+	int maxX = x + spec.getHeight() - 1;
+	int maxY = y + spec.getWidth() - 1;
+	roadsByRow.clearRectangle(x, maxX, y, maxY);
+	roadsByColumn.clearRectangle(y, maxY, x, maxX);
+  }
+
+  // Returns true if there is a road at the given cell. Cells outside the city never have roads.
+  boolean isRoad(int x, int y) {
+	return roadsByRow.get(x, y);
+  }
+
+  // Returns the index (x * number of columns + y) of the first road cell at or
+  // after the given index in row-major order, or -1 if there is none.
+  int nextRoadCell(int cellIndex) {
+	return roadsByRow.nextSetCell(cellIndex);
+  }
+
+  // True if every cell of row x between columns fromY and toY (inclusive) is road.
+  boolean isRowCovered(int x, int fromY, int toY) {
+	return roadsByRow.isAllSetInRow(x, fromY, toY);
+  }
+
+  // True if every cell of column y between rows fromX and toX (inclusive) is road.
+  boolean isColumnCovered(int y, int fromX, int toX) {
+	return roadsByColumn.isAllSetInRow(y, fromX, toX);
+  }
+
+  // True if at least one full edge of the footprint anchored at (x, y) borders road.
+  boolean hasRoadOnAnEdge(int x, int y, int height, int width) {
+	int maxX = x + height - 1;
+	int maxY = y + width - 1;
+	return isRowCovered(x - 1, y, maxY) // top edge
+		|| isRowCovered(maxX + 1, y, maxY) // bottom edge
+		|| isColumnCovered(y - 1, x, maxX) // left edge
+		|| isColumnCovered(maxY + 1, x, maxX); // right edge
+  }
+}
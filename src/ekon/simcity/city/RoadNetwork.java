@@ -0,0 +1,159 @@
+package ekon.simcity.city;
+
+import java.util.Arrays;
+
+/**
+ * Connected components of the road cells of the city, used to tell which roads can be reached from
+ * the city's entrance.
+ *
+ * Components are kept in a union-find structure over cells, so adding a road only unions it with
+ * the roads next to it. Union-find can't split components, so removing a road rebuilds the one
+ * component it was part of: a flood fill from the road's neighbors relabels the cells that are
+ * left, which costs the size of that component and leaves all other components alone.
+ *
+ * Besides its number of cells, every component counts the road elements anchored in it, so the
+ * number of roads connected to the entrance can be read off the entrance's component.
+ *
+ * Note: not thread-safe.
+ */
+class RoadNetwork {
+  private static final int NOT_ROAD = -1;
+
+  private final int numRows, numColumns;
+  private final int[] parents; // parent of each road cell, or NOT_ROAD.
+  private final int[] componentSizes; // number of cells of each component, at its root.
+  private final int[] componentRoads; // number of road elements anchored in each component, at its root.
+  private final boolean[] isAnchor; // true for the anchor cell of every road.
+  // Cells already relabeled by the current rebuild are stamped with its number.
+  private final int[] rebuildStamps;
+  private int rebuildNumber;
+  private final int[] stack;
+
+  RoadNetwork(int numRows, int numColumns) {
+	this.numRows = numRows;
+	this.numColumns = numColumns;
+	int numCells = numRows * numColumns;
+	this.parents = new int[numCells];
+	this.componentSizes = new int[numCells];
+	this.componentRoads = new int[numCells];
+	this.isAnchor = new boolean[numCells];
+	this.rebuildStamps = new int[numCells];
+	this.stack = new int[numCells];
+	Arrays.fill(parents, NOT_ROAD);
+  }
+
+  void add(GridElement road) {
+	int x = road.getPosition().getX();
+	int y = road.getPosition().getY();
+	ElementSpec spec = road.getSpec();
+	isAnchor[x * numColumns + y] = true;
+	for (int i = x; i < x + spec.getHeight(); i++) {
+	  for (int j = y; j < y + spec.getWidth(); j++) {
+		int cell = i * numColumns + j;
+		parents[cell] = cell;
+		componentSizes[cell] = 1;
+		componentRoads[cell] = isAnchor[cell] ? 1 : 0;
+	  }
+	}
+	for (int i = x; i < x + spec.getHeight(); i++) {
+	  for (int j = y; j < y + spec.getWidth(); j++) {
+		int cell = i * numColumns + j;
+		if (i > 0) union(cell, cell - numColumns);
+		if (i < numRows - 1) union(cell, cell + numColumns);
+		if (j > 0) union(cell, cell - 1);
+		if (j < numColumns - 1) union(cell, cell + 1);
+	  }
+	}
+  }
+
+  void remove(GridElement road) {
+	int x = road.getPosition().getX();
+	int y = road.getPosition().getY();
+	ElementSpec spec = road.getSpec();
+	isAnchor[x * numColumns + y] = false;
+	for (int i = x; i < x + spec.getHeight(); i++) {
+	  for (int j = y; j < y + spec.getWidth(); j++) {
+		parents[i * numColumns + j] = NOT_ROAD;
+	  }
+	}
+
+	// Every cell that was in the same component is reachable from one of the road's neighbors.
+	rebuildNumber++;
+	for (int i = x; i < x + spec.getHeight(); i++) {
+	  rebuildFrom(i, y - 1);
+	  rebuildFrom(i, y + spec.getWidth());
+	}
+	for (int j = y; j < y + spec.getWidth(); j++) {
+	  rebuildFrom(x - 1, j);
+	  rebuildFrom(x + spec.getHeight(), j);
+	}
+  }
+
+  boolean isRoad(int x, int y) {
+	return x >= 0 && y >= 0 && x < numRows && y < numColumns && parents[x * numColumns + y] != NOT_ROAD;
+  }
+
+  // True if both cells are road and are connected by road.
+  boolean isConnected(int x1, int y1, int x2, int y2) {
+	return isRoad(x1, y1) && isRoad(x2, y2) && find(x1 * numColumns + y1) == find(x2 * numColumns + y2);
+  }
+
+  // Returns the number of roads anchored in the component of the given cell, or 0 if it isn't road.
+  int getNumConnectedRoads(int x, int y) {
+	return isRoad(x, y) ? componentRoads[find(x * numColumns + y)] : 0;
+  }
+
+  // Relabels the component containing (x, y), unless it's not road or was already relabeled by
+  // the current rebuild.
+  private void rebuildFrom(int x, int y) {
+	if (!isRoad(x, y)) return;
+	int root = x * numColumns + y;
+	if (rebuildStamps[root] == rebuildNumber) return;
+
+	int size = 0, roads = 0, stackSize = 0;
+	rebuildStamps[root] = rebuildNumber;
+	stack[stackSize++] = root;
+	while (stackSize > 0) {
+	  int cell = stack[--stackSize];
+	  parents[cell] = root;
+	  size++;
+	  if (isAnchor[cell]) roads++;
+	  int i = cell / numColumns, j = cell % numColumns;
+	  if (i > 0) stackSize = push(cell - numColumns, stackSize);
+	  if (i < numRows - 1) stackSize = push(cell + numColumns, stackSize);
+	  if (j > 0) stackSize = push(cell - 1, stackSize);
+	  if (j < numColumns - 1) stackSize = push(cell + 1, stackSize);
+	}
+	componentSizes[root] = size;
+	componentRoads[root] = roads;
+  }
+
+  private int push(int cell, int stackSize) {
+	if (parents[cell] == NOT_ROAD || rebuildStamps[cell] == rebuildNumber) return stackSize;
+	rebuildStamps[cell] = rebuildNumber;
+	stack[stackSize] = cell;
+	return stackSize + 1;
+  }
+
+  private int find(int cell) {
+	while (parents[cell] != cell) {
+	  parents[cell] = parents[parents[cell]]; // path halving
+	  cell = parents[cell];
+	}
+	return cell;
+  }
+
+  private void union(int a, int b) {
+	if (parents[b] == NOT_ROAD) return;
+	int rootA = find(a), rootB = find(b);
+	if (rootA == rootB) return;
+	if (componentSizes[rootA] < componentSizes[rootB]) {
+	  int swap = rootA;
+	  rootA = rootB;
+	  rootB = swap;
+	}
+	parents[rootB] = rootA;
+	componentSizes[rootA] += componentSizes[rootB];
+	componentRoads[rootA] += componentRoads[rootB];
+  }
+}
@@ -0,0 +1,26 @@
+package ekon.simcity.city;
+
+/**
+ * The terms of a city's score. The score is the sum of each term's value times its weight, see
+ * {@link City#setScoreWeight}.
+ */
+public enum ScoreTerm {
+  // Number of houses.
+  HOUSES(100),
+  // Number of house cells inside a service's coverage area, counted once per service.
+  COVERAGE_UTILIZATION(1),
+  // Number of cells of service coverage areas that are outside of city limits.
+  COVERAGE_OUTSIDE_LIMITS(-1),
+  // Number of road cells inside a service's coverage area, counted once per service.
+  COVERAGE_ON_ROADS(-1);
+
+  private final int defaultWeight;
+
+  private ScoreTerm(int defaultWeight) {
+	this.defaultWeight = defaultWeight;
+  }
+
+  public int getDefaultWeight() {
+	return defaultWeight;
+  }
+}
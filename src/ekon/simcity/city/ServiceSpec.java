@@ -1,9 +1,7 @@
 package ekon.simcity.city;
 
-import java.util.Objects;
-
 public class ServiceSpec extends ElementSpec implements HasCoverageArea {
-  private int coverageWidth, coverageHeight;
+  private final int coverageWidth, coverageHeight;
 
   ServiceSpec(ElementType type, int width, int height, int coverageWidth, int coverageHeight) {
 	super(type, width, height);
@@ -29,7 +27,7 @@ public class ServiceSpec extends ElementSpec implements HasCoverageArea {
 
   @Override
   public int hashCode() {
-	return Objects.hash(super.hashCode(), coverageWidth, coverageHeight);
+	return (31 * super.hashCode() + coverageWidth) * 31 + coverageHeight;
   }
 
   @Override
@@ -37,7 +35,7 @@ public class ServiceSpec extends ElementSpec implements HasCoverageArea {
 	if (!(other instanceof ServiceSpec)) return false;
 	ServiceSpec o = (ServiceSpec)other;
 	return super.equals(other)
-		&& Objects.equals(getCoverageWidth(), o.getCoverageWidth())
-		&& Objects.equals(getCoverageHeight(), o.getCoverageHeight());
+		&& coverageWidth == o.coverageWidth
+		&& coverageHeight == o.coverageHeight;
   }
 }
@@ -1,13 +1,103 @@
 package ekon.simcity.city;
 
+import java.util.Arrays;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * A store makes one item at a time. Items put in it wait in its slots in the order they were put
+ * there: the first one is in the active slot, being made or about to be, and the others are in
+ * holding slots until everything before them is finished.
+ *
+ * The queue is a ring buffer of slot indices, so finishing the active item doesn't move anything.
+ * Finished items leave the queue but stay in their slots until they're picked up.
+ */
 public class Store extends ManufacturingFacility {
+  // Indices in getSlots() of the queued items, in order, from the head.
+  private int[] queue;
+  private int head;
+  private int queueSize;
 
   public Store(ManufacturingFacility.Type type, int capacity) {
 	super(type, capacity);
+	this.queue = new int[capacity];
   }
   
-  // Add logic for how a store sequences production
-  // need to figure out sequencing - would items move through slots as they become available?
-  // maybe have 2 types of slots (active slots - the ones factories have and the first one for a store) and holding slots with a priority order.
+  @Override
+  void addSlot() {
+	super.addSlot();
+	int[] newQueue = new int[getSlots().size()];
+	for (int i = 0; i < queueSize; i++) {
+	  newQueue[i] = getQueuedSlotIndex(i);
+	}
+	queue = newQueue;
+	head = 0;
+  }
+
+  @Override
+  void itemAdded(int slotIndex) {
+	queue[(head + queueSize) % queue.length] = slotIndex;
+	queueSize++;
+  }
+
+  /** Returns the number of items in the queue, including the active one. */
+  public int getQueueSize() {
+	return queueSize;
+  }
+
+  /** Returns the index in {@link #getSlots} of the item at the given queue position, 0 being the active one. */
+  public int getQueuedSlotIndex(int position) {
+	if (position < 0 || position >= queueSize) {
+	  throw new IndexOutOfBoundsException("Position " + position + " not in queue of " + queueSize + " items");
+	}
+	return queue[(head + position) % queue.length];
+  }
 
+  /** Returns the slot of the item being made or to be made next, null if nothing is queued. */
+  public Slot getActiveSlot() {
+	return queueSize == 0 ? null : getSlots().get(queue[head]);
+  }
+
+  // Takes the finished active item off the queue, so that the next one can start.
+  void finishActiveItem() {
+	Slot activeSlot = getActiveSlot();
+	if (activeSlot == null || !activeSlot.isStarted()) throw new IllegalStateException("No active item to finish in " + this);
+	head = (head + 1) % queue.length;
+	queueSize--;
+  }
+
+  /** Returns the minutes it takes to make the queued items that haven't started yet. */
+  public int getQueuedMinutes() {
+	int minutes = 0;
+	for (int i = 0; i < queueSize; i++) {
+	  Slot slot = getSlots().get(getQueuedSlotIndex(i));
+	  if (!slot.isStarted()) minutes += slot.getItem().getMinutesToMake();
+	}
+	return minutes;
+  }
+
+  /**
+   * Returns the minute the item at the given queue position is finished, if the items that haven't
+   * started yet start no earlier than the given minute and never wait for their ingredients.
+   */
+  public long getFinishMinute(int position, long minute) {
+	long finishMinute = minute;
+	for (int i = 0; i <= position; i++) {
+	  Slot slot = getSlots().get(getQueuedSlotIndex(i));
+	  finishMinute = slot.isStarted() ? slot.getFinishMinute() : finishMinute + slot.getItem().getMinutesToMake();
+	}
+	return finishMinute;
+  }
+
+  @Override
+  public String toString() {
+	int[] queuedSlotIndices = new int[queueSize];
+	for (int i = 0; i < queueSize; i++) {
+	  queuedSlotIndices[i] = getQueuedSlotIndex(i);
+	}
+	return MoreObjects.toStringHelper(this)
+		.addValue(super.toString())
+		.add("queue", Arrays.toString(queuedSlotIndices))
+		.toString();
+  }
 }
@@ -0,0 +1,34 @@
+package ekon.simcity.city;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class StoreTest {
+
+  /** Verify that items are made in the order they were put in the store, even as slots are reused. */
+  @Test
+  public void testQueue() {
+	Store store = new Store(ManufacturingFacility.Type.BUILDING_SUPPLY_STORE, 2);
+	store.makeItems(Item.NAILS, Item.PLANKS);
+	assertEquals(2, store.getQueueSize());
+	assertSame(store.getSlots().get(0), store.getActiveSlot());
+	assertEquals(35, store.getQueuedMinutes());
+
+	// Planks are started once the nails are done.
+	store.getActiveSlot().start(10);
+	assertEquals(15, store.getFinishMinute(0, 0));
+	assertEquals(45, store.getFinishMinute(1, 0));
+	assertEquals(30, store.getQueuedMinutes());
+
+	// Bricks go in the slot the nails were picked up from, but are still made after the planks.
+	store.finishActiveItem();
+	store.getSlots().get(0).pickUpItem();
+	store.makeItems(Item.BRIKS);
+	assertEquals(2, store.getQueueSize());
+	assertEquals(1, store.getQueuedSlotIndex(0));
+	assertEquals(0, store.getQueuedSlotIndex(1));
+	assertEquals(50, store.getFinishMinute(1, 0));
+  }
+}
@@ -0,0 +1,130 @@
+package ekon.simcity.city;
+
+/**
+ * The rotations and mirror images of a city. A layout and its image under a symmetry have the same
+ * number of houses, so a search only needs to look at one of them.
+ *
+ * The symmetries that swap rows and columns only apply to square cities. They turn a footprint or
+ * coverage area that isn't square on its side, so the image of such an element has a rotated spec
+ * (see {@link #transform(ElementSpec)}). A search only places the specs it was given, so it can only
+ * treat a layout and its image as the same layout if the symmetry keeps every spec as it is.
+ *
+ * Coverage areas are centered on their service rounding towards the top-left, so a symmetry only
+ * maps coverage onto coverage for specs where it doesn't flip an axis with an odd difference
+ * between the coverage and footprint sizes. See {@link #preservesCoverage}.
+ */
+public enum Symmetry {
+  IDENTITY(false),
+  ROTATE_90(true),
+  ROTATE_180(false),
+  ROTATE_270(true),
+  FLIP_ROWS(false),
+  FLIP_COLUMNS(false),
+  TRANSPOSE(true),
+  ANTI_TRANSPOSE(true);
+
+  private final boolean swapsAxes;
+
+  private Symmetry(boolean swapsAxes) {
+	this.swapsAxes = swapsAxes;
+  }
+
+  // True if rows become columns and the other way around.
+  public boolean swapsAxes() {
+	return swapsAxes;
+  }
+
+  public boolean appliesTo(Position cityLimits) {
+	return !swapsAxes || cityLimits.getX() == cityLimits.getY();
+  }
+
+  // Returns the first row of the image of the rectangle with the given top-left corner and size.
+  int transformX(int x, int y, int height, int width, int numRows, int numColumns) {
+	switch (this) {
+	  case IDENTITY:
+	  case FLIP_COLUMNS:
+		return x;
+	  case ROTATE_180:
+	  case FLIP_ROWS:
+		return numRows - x - height;
+	  case ROTATE_90:
+	  case TRANSPOSE:
+		return y;
+	  case ROTATE_270:
+	  case ANTI_TRANSPOSE:
+		return numColumns - y - width;
+	  default:
+		throw new IllegalStateException("Unknown symmetry " + this);
+	}
+  }
+
+  // Returns the first column of the image of the rectangle with the given top-left corner and size.
+  int transformY(int x, int y, int height, int width, int numRows, int numColumns) {
+	switch (this) {
+	  case IDENTITY:
+	  case FLIP_ROWS:
+		return y;
+	  case ROTATE_180:
+	  case FLIP_COLUMNS:
+		return numColumns - y - width;
+	  case ROTATE_270:
+	  case TRANSPOSE:
+		return x;
+	  case ROTATE_90:
+	  case ANTI_TRANSPOSE:
+		return numRows - x - height;
+	  default:
+		throw new IllegalStateException("Unknown symmetry " + this);
+	}
+  }
+
+  // Returns the spec of the image of an element with the given spec.
+  ElementSpec transform(ElementSpec spec) {
+	if (!swapsAxes) return spec;
+	if (spec instanceof ServiceSpec) {
+	  ServiceSpec serviceSpec = (ServiceSpec) spec;
+	  if (spec.getWidth() == spec.getHeight() && serviceSpec.getCoverageWidth() == serviceSpec.getCoverageHeight()) {
+		return spec;
+	  }
+	  return new ServiceSpec(spec.getType(), spec.getHeight(), spec.getWidth(),
+		  serviceSpec.getCoverageHeight(), serviceSpec.getCoverageWidth());
+	}
+	return spec.getWidth() == spec.getHeight() ? spec : new ElementSpec(spec.getType(), spec.getHeight(), spec.getWidth());
+  }
+
+  // Returns the image of the given element in the given city, or in a city with the same limits.
+  GridElement transform(GridElement element, City city) {
+	ElementSpec spec = element.getSpec();
+	Position position = element.getPosition();
+	int numRows = city.getCityLimits().getX(), numColumns = city.getCityLimits().getY();
+	return new GridElement(transform(spec), city.getPosition(
+		transformX(position.getX(), position.getY(), spec.getHeight(), spec.getWidth(), numRows, numColumns),
+		transformY(position.getX(), position.getY(), spec.getHeight(), spec.getWidth(), numRows, numColumns)));
+  }
+
+  /**
+   * True if the image of an element with the given spec has the same spec, and the image of its
+   * coverage area is the coverage area of the element's image, i.e. the symmetry maps covered cells
+   * to covered cells.
+   */
+  public boolean preservesCoverage(ElementSpec spec, Position cityLimits) {
+	// Otherwise transform(spec) is the rotated spec, which isn't one of the specs being placed.
+	if (swapsAxes && spec.getWidth() != spec.getHeight()) return false;
+	if (!(spec instanceof ServiceSpec)) return true;
+	ServiceSpec serviceSpec = (ServiceSpec) spec;
+	if (swapsAxes && serviceSpec.getCoverageWidth() != serviceSpec.getCoverageHeight()) return false;
+	int numRows = cityLimits.getX(), numColumns = cityLimits.getY();
+	// Coverage of an element anchored at (0, 0), and of its image.
+	int coverageX = -(serviceSpec.getCoverageHeight() - spec.getHeight()) / 2;
+	int coverageY = -(serviceSpec.getCoverageWidth() - spec.getWidth()) / 2;
+	int imageCoverageX = transformX(coverageX, coverageY, serviceSpec.getCoverageHeight(),
+		serviceSpec.getCoverageWidth(), numRows, numColumns);
+	int imageCoverageY = transformY(coverageX, coverageY, serviceSpec.getCoverageHeight(),
+		serviceSpec.getCoverageWidth(), numRows, numColumns);
+
+	int imageX = transformX(0, 0, spec.getHeight(), spec.getWidth(), numRows, numColumns);
+	int imageY = transformY(0, 0, spec.getHeight(), spec.getWidth(), numRows, numColumns);
+	return imageCoverageX == imageX - (serviceSpec.getCoverageHeight() - spec.getHeight()) / 2
+		&& imageCoverageY == imageY - (serviceSpec.getCoverageWidth() - spec.getWidth()) / 2;
+  }
+}
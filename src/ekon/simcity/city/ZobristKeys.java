@@ -0,0 +1,44 @@
+package ekon.simcity.city;
+
+/**
+ * Zobrist keys for the elements of a city.
+ *
+ * The hash of a city is the XOR of the keys of all its elements, so it doesn't depend on the order
+ * the elements were added in and can be updated with a single XOR when an element is added or
+ * removed. Instead of a table of random numbers per spec and cell, the key is derived by mixing the
+ * spec and position, which works for any spec and any city size and gives the same keys on every
+ * run.
+ */
+final class ZobristKeys {
+
+  // Returns the key of the image of an element under the given symmetry, without creating the
+  // image itself.
+  static long of(ElementSpec spec, int x, int y, Symmetry symmetry, int numRows, int numColumns) {
+	int imageX = symmetry.transformX(x, y, spec.getHeight(), spec.getWidth(), numRows, numColumns);
+	int imageY = symmetry.transformY(x, y, spec.getHeight(), spec.getWidth(), numRows, numColumns);
+	return of(spec, imageX, imageY, symmetry.swapsAxes());
+  }
+
+  // The key of a spec with its axes swapped is the key of the rotated spec.
+  private static long of(ElementSpec spec, int x, int y, boolean swapAxes) {
+	long specKey = spec.getType().ordinal();
+	specKey = specKey * 31 + (swapAxes ? spec.getHeight() : spec.getWidth());
+	specKey = specKey * 31 + (swapAxes ? spec.getWidth() : spec.getHeight());
+	if (spec instanceof ServiceSpec) {
+	  ServiceSpec serviceSpec = (ServiceSpec) spec;
+	  specKey = specKey * 31 + (swapAxes ? serviceSpec.getCoverageHeight() : serviceSpec.getCoverageWidth());
+	  specKey = specKey * 31 + (swapAxes ? serviceSpec.getCoverageWidth() : serviceSpec.getCoverageHeight());
+	}
+	return mix(mix(specKey) + Position.pack(x, y));
+  }
+
+  // SplitMix64 finalizer.
+  private static long mix(long z) {
+	z += 0x9e3779b97f4a7c15L;
+	z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+	z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+	return z ^ (z >>> 31);
+  }
+
+  private ZobristKeys() {}
+}
@@ -0,0 +1,25 @@
+package ekon.simcity.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that many threads can add to without contending, see {@link LongAdder}.
+ */
+public class Counter implements CounterMXBean {
+  private final LongAdder count = new LongAdder();
+
+  Counter() {}
+
+  public void increment() {
+	count.increment();
+  }
+
+  public void add(long amount) {
+	count.add(amount);
+  }
+
+  @Override
+  public long getCount() {
+	return count.sum();
+  }
+}
@@ -0,0 +1,6 @@
+package ekon.simcity.metrics;
+
+/** JMX view of a {@link Counter}. */
+public interface CounterMXBean {
+  long getCount();
+}
@@ -0,0 +1,52 @@
+package ekon.simcity.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One count per value of an enum, e.g. per constraint or per facility type. Counts are kept in an
+ * array indexed by ordinal, so no map lookup is needed to update one.
+ */
+public class EnumCounter<E extends Enum<E>> implements EnumCounterMXBean {
+  private final E[] keys;
+  private final LongAdder[] counts;
+
+  EnumCounter(Class<E> keyType) {
+	this.keys = keyType.getEnumConstants();
+	this.counts = new LongAdder[keys.length];
+	for (int i = 0; i < counts.length; i++) {
+	  counts[i] = new LongAdder();
+	}
+  }
+
+  public void increment(E key) {
+	counts[key.ordinal()].increment();
+  }
+
+  public void add(E key, long amount) {
+	counts[key.ordinal()].add(amount);
+  }
+
+  public long getCount(E key) {
+	return counts[key.ordinal()].sum();
+  }
+
+  @Override
+  public Map<String, Long> getCounts() {
+	Map<String, Long> countsByName = new LinkedHashMap<>();
+	for (E key : keys) {
+	  countsByName.put(key.name(), getCount(key));
+	}
+	return countsByName;
+  }
+
+  @Override
+  public long getTotalCount() {
+	long total = 0;
+	for (LongAdder count : counts) {
+	  total += count.sum();
+	}
+	return total;
+  }
+}
@@ -0,0 +1,11 @@
+package ekon.simcity.metrics;
+
+import java.util.Map;
+
+/** JMX view of an {@link EnumCounter}. */
+public interface EnumCounterMXBean {
+  // Counts by the name of their key.
+  Map<String, Long> getCounts();
+
+  long getTotalCount();
+}
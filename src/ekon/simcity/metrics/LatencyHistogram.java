@@ -0,0 +1,113 @@
+package ekon.simcity.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies in nanoseconds, in the style of HdrHistogram: a fixed number of buckets
+ * covers every long value with a bounded relative error, so recording is a few bit operations and
+ * one atomic increment.
+ *
+ * Values below SUB_BUCKET_COUNT get a bucket each. Above that, every power of two range is split
+ * into SUB_BUCKET_COUNT / 2 buckets of equal width, so a bucket is never wider than 1/16 of the
+ * values in it. Percentiles are reported as the highest value of the bucket they fall in.
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+  // Magnitude of Long.MAX_VALUE is 63 - SUB_BUCKET_BITS.
+  private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  LatencyHistogram() {}
+
+  /** Records a latency. Negative latencies, e.g. from a clock adjustment, are recorded as 0. */
+  public void record(long nanos) {
+	if (nanos < 0) nanos = 0;
+	counts.incrementAndGet(getBucket(nanos));
+	count.increment();
+	sum.add(nanos);
+	long currentMax = max.get();
+	while (nanos > currentMax && !max.compareAndSet(currentMax, nanos)) {
+	  currentMax = max.get();
+	}
+  }
+
+  /** Records the time since the given System.nanoTime() reading. */
+  public void recordSince(long startNanos) {
+	record(System.nanoTime() - startNanos);
+  }
+
+  static int getBucket(long value) {
+	if (value < SUB_BUCKET_COUNT) return (int) value;
+	int magnitude = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+	// value >>> magnitude is in [SUB_BUCKET_HALF_COUNT, SUB_BUCKET_COUNT).
+	return magnitude * SUB_BUCKET_HALF_COUNT + (int) (value >>> magnitude);
+  }
+
+  // Returns the lowest value that falls in the given bucket.
+  static long getLowestValue(int bucket) {
+	if (bucket < SUB_BUCKET_COUNT) return bucket;
+	int magnitude = bucket / SUB_BUCKET_HALF_COUNT - 1;
+	return (long) (bucket - magnitude * SUB_BUCKET_HALF_COUNT) << magnitude;
+  }
+
+  // Returns the highest value that falls in the given bucket.
+  static long getHighestValue(int bucket) {
+	return bucket == NUM_BUCKETS - 1 ? Long.MAX_VALUE : getLowestValue(bucket + 1) - 1;
+  }
+
+  /** Returns the latency that the given fraction (between 0 and 1) of the recorded ones don't exceed. */
+  public long getPercentile(double fraction) {
+	if (fraction < 0 || fraction > 1) throw new IllegalArgumentException("Fraction must be in [0, 1], was " + fraction);
+	long total = 0;
+	for (int i = 0; i < NUM_BUCKETS; i++) {
+	  total += counts.get(i);
+	}
+	if (total == 0) return 0;
+	long rank = Math.max(1, (long) Math.ceil(fraction * total));
+	long seen = 0;
+	for (int i = 0; i < NUM_BUCKETS; i++) {
+	  seen += counts.get(i);
+	  if (seen >= rank) return Math.min(getHighestValue(i), max.get());
+	}
+	return max.get();
+  }
+
+  @Override
+  public long getCount() {
+	return count.sum();
+  }
+
+  @Override
+  public double getMeanNanos() {
+	long n = count.sum();
+	return n == 0 ? 0 : (double) sum.sum() / n;
+  }
+
+  @Override
+  public long getMaxNanos() {
+	return max.get();
+  }
+
+  @Override
+  public long getMedianNanos() {
+	return getPercentile(0.5);
+  }
+
+  @Override
+  public long get99thPercentileNanos() {
+	return getPercentile(0.99);
+  }
+
+  @Override
+  public long get999thPercentileNanos() {
+	return getPercentile(0.999);
+  }
+}
@@ -0,0 +1,16 @@
+package ekon.simcity.metrics;
+
+/** JMX view of a {@link LatencyHistogram}. All latencies are in nanoseconds. */
+public interface LatencyHistogramMXBean {
+  long getCount();
+
+  double getMeanNanos();
+
+  long getMaxNanos();
+
+  long getMedianNanos();
+
+  long get99thPercentileNanos();
+
+  long get999thPercentileNanos();
+}
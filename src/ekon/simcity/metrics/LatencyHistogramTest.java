@@ -0,0 +1,38 @@
+package ekon.simcity.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  /** Verify that buckets cover every value once, in order, and are at most 1/16 of their values wide. */
+  @Test
+  public void testGetBucket() {
+	for (long value : new long[] {0, 1, 31, 32, 33, 63, 64, 1000, 123456789L, Long.MAX_VALUE}) {
+	  int bucket = LatencyHistogram.getBucket(value);
+	  assertTrue(LatencyHistogram.getLowestValue(bucket) <= value);
+	  assertTrue(value <= LatencyHistogram.getHighestValue(bucket));
+	  assertTrue(LatencyHistogram.getHighestValue(bucket) - LatencyHistogram.getLowestValue(bucket) <= Math.max(0, value / 16));
+	}
+	for (int bucket = 1; bucket <= LatencyHistogram.getBucket(Long.MAX_VALUE); bucket++) {
+	  assertEquals(LatencyHistogram.getHighestValue(bucket - 1) + 1, LatencyHistogram.getLowestValue(bucket));
+	}
+  }
+
+  @Test
+  public void testGetPercentile() {
+	LatencyHistogram histogram = new LatencyHistogram();
+	for (int i = 1; i <= 1000; i++) {
+	  histogram.record(i * 1000L);
+	}
+
+	assertEquals(1000, histogram.getCount());
+	assertEquals(500500.0, histogram.getMeanNanos(), 0.001);
+	assertEquals(1000000, histogram.getMaxNanos());
+	assertTrue(Math.abs(histogram.getMedianNanos() - 500000) <= 500000 / 16);
+	assertTrue(Math.abs(histogram.get99thPercentileNanos() - 990000) <= 990000 / 16);
+	assertEquals(1000000, histogram.getPercentile(1));
+  }
+}
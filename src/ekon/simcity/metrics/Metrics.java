@@ -0,0 +1,58 @@
+package ekon.simcity.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Creates the metrics of the optimizers and exposes them over JMX, under the domain "ekon.simcity".
+ *
+ * Metrics are only collected when the JVM runs with -Dekon.simcity.metrics=true. Every update is
+ * guarded by {@link #ENABLED}, which is a constant, so with metrics disabled the JIT drops the
+ * updates and the hot paths pay nothing for them:
+ *
+ * <pre>
+ * if (Metrics.ENABLED) NODES_EXPANDED.increment();
+ * </pre>
+ *
+ * Metrics are meant to be kept in static fields of the class they measure, so each is created and
+ * registered once.
+ */
+public class Metrics {
+  /** True if metrics are collected. */
+  public static final boolean ENABLED = Boolean.getBoolean("ekon.simcity.metrics");
+
+  private static final String DOMAIN = "ekon.simcity";
+
+  private Metrics() {}
+
+  public static Counter newCounter(String name) {
+	Counter counter = new Counter();
+	register(counter, "Counter", name);
+	return counter;
+  }
+
+  public static <E extends Enum<E>> EnumCounter<E> newEnumCounter(String name, Class<E> keyType) {
+	EnumCounter<E> counter = new EnumCounter<>(keyType);
+	register(counter, "EnumCounter", name);
+	return counter;
+  }
+
+  public static LatencyHistogram newLatencyHistogram(String name) {
+	LatencyHistogram histogram = new LatencyHistogram();
+	register(histogram, "LatencyHistogram", name);
+	return histogram;
+  }
+
+  // Registers the metric with the platform MBean server, if metrics are enabled.
+  private static void register(Object metric, String type, String name) {
+	if (!ENABLED) return;
+	try {
+	  ManagementFactory.getPlatformMBeanServer().registerMBean(
+		  metric, new ObjectName(DOMAIN + ":type=" + type + ",name=" + name));
+	} catch (JMException e) {
+	  throw new IllegalStateException("Couldn't register metric " + name, e);
+	}
+  }
+}
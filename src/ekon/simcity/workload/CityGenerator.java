@@ -0,0 +1,135 @@
+package ekon.simcity.workload;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import ekon.simcity.city.City;
+import ekon.simcity.city.ElementFactory;
+import ekon.simcity.city.ElementSpec;
+import ekon.simcity.city.ElementType;
+import ekon.simcity.city.Position;
+import ekon.simcity.city.ServiceSpec;
+
+/**
+ * Generates cities of any size for measuring how the verifier and the optimizers scale. The same
+ * seed always generates the same city.
+ *
+ * A city gets its entrance in the corner at (0, 0) and a road network grown from it: a road down
+ * the first column and one across the first row, then roads across the city every few rows and
+ * down it every few columns, all connected to the entrance. Fire and police stations are then
+ * placed next to roads, about one of each per coverage area, and houses and parks are placed next
+ * to roads until the requested density is reached or there's no room left.
+ */
+public class CityGenerator {
+  private static final ElementSpec ROAD_SPEC = ElementFactory.getSpec(ElementType.ROAD);
+  private static final ElementSpec HOUSE_SPEC = ElementFactory.getSpec(ElementType.HOUSE);
+  private static final ElementSpec PARK_SPEC = ElementFactory.getSpec(ElementType.PARK);
+  private static final List<ElementType> REQUIRED_SERVICE_TYPES = Arrays.asList(
+	  ElementType.FIRE_STATION, ElementType.POLICE_STATION);
+  // Blocks between roads are between MIN_BLOCK_SIZE and MAX_BLOCK_SIZE cells across.
+  private static final int MIN_BLOCK_SIZE = 2;
+  private static final int MAX_BLOCK_SIZE = 6;
+  // One park for this many houses.
+  static final int HOUSES_PER_PARK = 10;
+
+  private final SplittableRandom random;
+
+  public CityGenerator(long seed) {
+	this.random = new SplittableRandom(seed);
+  }
+
+  /**
+   * Generates a city with the given limits.
+   *
+   * @param density fraction of the cells that aren't road to fill with elements, between 0 and 1
+   */
+  public City generate(Position cityLimits, double density) {
+	if (density < 0 || density > 1) throw new IllegalArgumentException("Density must be in [0, 1], was " + density);
+	Position entrance = Position.of(0, 0);
+	City city = new City(cityLimits, entrance);
+	addRoads(city);
+
+	Map<ElementSpec, List<Position>> placementsBySpec = new HashMap<>();
+	int cellsToFill = (int) (density * city.getNumFreeCells());
+	int filledCells = 0;
+	for (ElementType serviceType : REQUIRED_SERVICE_TYPES) {
+	  ServiceSpec spec = ElementFactory.getServiceSpec(serviceType);
+	  int numServices = Math.max(1, cityLimits.getX() * cityLimits.getY()
+		  / (spec.getCoverageWidth() * spec.getCoverageHeight()));
+	  for (int i = 0; i < numServices && filledCells < cellsToFill; i++) {
+		if (!placeRandomly(city, spec, placementsBySpec)) break;
+		filledCells += spec.getWidth() * spec.getHeight();
+	  }
+	}
+	int numHouses = 0, numParks = 0;
+	while (filledCells < cellsToFill) {
+	  ElementSpec spec = numHouses >= (numParks + 1) * HOUSES_PER_PARK ? PARK_SPEC : HOUSE_SPEC;
+	  if (!placeRandomly(city, spec, placementsBySpec)) break;
+	  filledCells += spec.getWidth() * spec.getHeight();
+	  if (spec == HOUSE_SPEC) {
+		numHouses++;
+	  } else {
+		numParks++;
+	  }
+	}
+	return city;
+  }
+
+  private void addRoads(City city) {
+	int numRows = city.getCityLimits().getX();
+	int numColumns = city.getCityLimits().getY();
+	for (int x = 0; x < numRows; x++) {
+	  city.add(ElementFactory.getElement(ElementType.ROAD, city.getPosition(x, 0)));
+	}
+	for (int y = 1; y < numColumns; y++) {
+	  city.add(ElementFactory.getElement(ElementType.ROAD, city.getPosition(0, y)));
+	}
+	// Roads across the city connect to the first column, roads down it to the first row.
+	for (int x = nextRoad(0); x < numRows; x = nextRoad(x)) {
+	  for (int y = 1; y < numColumns; y++) {
+		addRoad(city, x, y);
+	  }
+	}
+	for (int y = nextRoad(0); y < numColumns; y = nextRoad(y)) {
+	  for (int x = 1; x < numRows; x++) {
+		addRoad(city, x, y);
+	  }
+	}
+  }
+
+  private int nextRoad(int previousRoad) {
+	return previousRoad + 1 + MIN_BLOCK_SIZE + random.nextInt(MAX_BLOCK_SIZE - MIN_BLOCK_SIZE + 1);
+  }
+
+  private void addRoad(City city, int x, int y) {
+	Position position = city.getPosition(x, y);
+	if (city.canPlace(ROAD_SPEC, position)) city.add(ElementFactory.getElement(ElementType.ROAD, position));
+  }
+
+  // Places an element at a random position next to road. Returns false if there's no room left.
+  //
+  // Roads are all placed first, so elements can only take placements away. The placements of
+  // each spec are found once and the ones that no longer fit are dropped as they're drawn.
+  private boolean placeRandomly(City city, ElementSpec spec, Map<ElementSpec, List<Position>> placementsBySpec) {
+	List<Position> placements = placementsBySpec.get(spec);
+	if (placements == null) {
+	  placements = new ArrayList<>(city.findPlacements(spec));
+	  placementsBySpec.put(spec, placements);
+	}
+	while (!placements.isEmpty()) {
+	  int index = random.nextInt(placements.size());
+	  Position position = placements.get(index);
+	  placements.set(index, placements.get(placements.size() - 1));
+	  placements.remove(placements.size() - 1);
+	  if (city.canPlace(spec, position)) {
+		city.add(ElementFactory.getElement(spec.getType(), position));
+		return true;
+	  }
+	}
+	return false;
+  }
+}
@@ -0,0 +1,83 @@
+package ekon.simcity.workload;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import ekon.simcity.city.Factory;
+import ekon.simcity.city.FactoryType;
+import ekon.simcity.city.Item;
+import ekon.simcity.city.ManufacturingFacility;
+import ekon.simcity.city.ProductionRunner;
+import ekon.simcity.city.Store;
+
+/**
+ * Generates production runners, from early game economies with a factory and a few items to late
+ * game ones with every store. The same seed always generates the same production runner.
+ *
+ * Items are unlocked in a random order, but always together with their ingredients, so every
+ * unlocked item can be made. A production runner gets a factory and a store for every facility
+ * type that has an unlocked item, and some of the slots already have items in production.
+ */
+public class EconomyGenerator {
+  private final SplittableRandom random;
+
+  public EconomyGenerator(long seed) {
+	this.random = new SplittableRandom(seed);
+  }
+
+  /**
+   * Generates a production runner.
+   *
+   * @param numUnlockedItems number of items to unlock, at least 1; a few more may be unlocked to
+   *     complete the ingredients of the last one
+   * @param minStoreCapacity fewest slots a store gets
+   * @param maxStoreCapacity most slots a store gets
+   * @param fractionInProduction fraction of the slots that have an item in production, between 0 and 1
+   */
+  public ProductionRunner generate(int numUnlockedItems, int minStoreCapacity, int maxStoreCapacity,
+	  double fractionInProduction) {
+	if (numUnlockedItems < 1) throw new IllegalArgumentException("Need to unlock at least 1 item, was " + numUnlockedItems);
+	if (minStoreCapacity < 1 || maxStoreCapacity < minStoreCapacity) {
+	  throw new IllegalArgumentException("Invalid store capacity range [" + minStoreCapacity + ", " + maxStoreCapacity + "]");
+	}
+	if (fractionInProduction < 0 || fractionInProduction > 1) {
+	  throw new IllegalArgumentException("Fraction in production must be in [0, 1], was " + fractionInProduction);
+	}
+
+	Set<Item> unlockedItems = EnumSet.noneOf(Item.class);
+	List<Item> candidates = new ArrayList<>(EnumSet.allOf(Item.class));
+	while (unlockedItems.size() < numUnlockedItems && !candidates.isEmpty()) {
+	  unlockWithIngredients(candidates.remove(random.nextInt(candidates.size())), unlockedItems);
+	}
+
+	ProductionRunner prodRunner = new ProductionRunner();
+	Set<ManufacturingFacility.Type> facilityTypes = EnumSet.noneOf(ManufacturingFacility.Type.class);
+	for (Item item : unlockedItems) {
+	  prodRunner.unlockItem(item);
+	  facilityTypes.add(item.getManufacturingFacilityType());
+	}
+	for (ManufacturingFacility.Type type : facilityTypes) {
+	  ManufacturingFacility facility = type == ManufacturingFacility.Type.FACTORY
+		  ? new Factory(FactoryType.SMALL_FACTORY)
+		  : new Store(type, minStoreCapacity + random.nextInt(maxStoreCapacity - minStoreCapacity + 1));
+	  prodRunner.addFacility(facility);
+	  List<Item> items = new ArrayList<>(prodRunner.getUnlockedItems().get(type));
+	  for (int i = 0; i < facility.getSlots().size(); i++) {
+		if (random.nextDouble() < fractionInProduction) {
+		  facility.makeItems(items.get(random.nextInt(items.size())));
+		}
+	  }
+	}
+	return prodRunner;
+  }
+
+  private static void unlockWithIngredients(Item item, Set<Item> unlockedItems) {
+	if (!unlockedItems.add(item)) return;
+	for (Item ingredient : item.getRequiredIngredients().keySet()) {
+	  unlockWithIngredients(ingredient, unlockedItems);
+	}
+  }
+}
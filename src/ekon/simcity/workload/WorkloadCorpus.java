@@ -0,0 +1,190 @@
+package ekon.simcity.workload;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import ekon.simcity.city.City;
+import ekon.simcity.city.ElementFactory;
+import ekon.simcity.city.ElementType;
+import ekon.simcity.city.Factory;
+import ekon.simcity.city.FactoryType;
+import ekon.simcity.city.GridElement;
+import ekon.simcity.city.Item;
+import ekon.simcity.city.ManufacturingFacility;
+import ekon.simcity.city.ManufacturingFacility.Slot;
+import ekon.simcity.city.Position;
+import ekon.simcity.city.ProductionRunner;
+import ekon.simcity.city.Store;
+
+/**
+ * A set of cities and production runners saved to a text file, so that the same workload can be
+ * measured again after the code or the generators change.
+ *
+ * The file lists every element and facility explicitly, one per line:
+ *
+ * <pre>
+ * # comment
+ * city [rows] [columns] [entranceX] [entranceY]
+ * [ElementType] [x] [y]
+ * end
+ * economy
+ * unlock [Item]
+ * factory [FactoryType]
+ * store [ManufacturingFacility.Type] [capacity]
+ * slot [ManufacturingFacility.Type] [Item]
+ * end
+ * </pre>
+ *
+ * Cities without an entrance leave out its coordinates. Slots lines list the items in production
+ * of the facility added before them.
+ */
+public class WorkloadCorpus {
+  private final List<City> cities;
+  private final List<ProductionRunner> economies;
+
+  public WorkloadCorpus(List<City> cities, List<ProductionRunner> economies) {
+	this.cities = cities;
+	this.economies = economies;
+  }
+
+  /**
+   * Generates a corpus for measuring scale: cities from 16x16 to 128x128 cells, half full and
+   * nearly full, and economies from a few unlocked items to all of them.
+   */
+  public static WorkloadCorpus generate(long seed) {
+	CityGenerator cityGenerator = new CityGenerator(seed);
+	List<City> cities = new ArrayList<>();
+	for (int size = 16; size <= 128; size *= 2) {
+	  cities.add(cityGenerator.generate(Position.of(size, size), 0.5));
+	  cities.add(cityGenerator.generate(Position.of(size, size), 0.9));
+	}
+	EconomyGenerator economyGenerator = new EconomyGenerator(seed);
+	List<ProductionRunner> economies = new ArrayList<>();
+	for (int numUnlockedItems = 2; numUnlockedItems <= Item.values().length; numUnlockedItems *= 2) {
+	  economies.add(economyGenerator.generate(numUnlockedItems, 2, 5, 0.0));
+	  economies.add(economyGenerator.generate(numUnlockedItems, 2, 5, 0.5));
+	}
+	economies.add(economyGenerator.generate(Item.values().length, 5, 11, 0.0));
+	return new WorkloadCorpus(cities, economies);
+  }
+
+  public List<City> getCities() {
+	return cities;
+  }
+
+  public List<ProductionRunner> getEconomies() {
+	return economies;
+  }
+
+  public void write(Path file, String comment) throws IOException {
+	try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+	  writer.write("# " + comment + "\n");
+	  for (City city : cities) {
+		writeCity(city, writer);
+	  }
+	  for (ProductionRunner economy : economies) {
+		writeEconomy(economy, writer);
+	  }
+	}
+  }
+
+  private static void writeCity(City city, BufferedWriter writer) throws IOException {
+	Position limits = city.getCityLimits();
+	Position entrance = city.getEntrance();
+	writer.write("city " + limits.getX() + " " + limits.getY()
+		+ (entrance == null ? "" : " " + entrance.getX() + " " + entrance.getY()) + "\n");
+	for (GridElement element : city.getElements()) {
+	  Position position = element.getPosition();
+	  writer.write(element.getSpec().getType().name() + " " + position.getX() + " " + position.getY() + "\n");
+	}
+	writer.write("end\n");
+  }
+
+  // Facilities and items are written in enum order, so the same economy is always written the same.
+  private static void writeEconomy(ProductionRunner economy, BufferedWriter writer) throws IOException {
+	writer.write("economy\n");
+	List<Item> unlockedItems = new ArrayList<>(economy.getUnlockedItems().values());
+	Collections.sort(unlockedItems);
+	for (Item item : unlockedItems) {
+	  writer.write("unlock " + item.name() + "\n");
+	}
+	Set<ManufacturingFacility.Type> types = EnumSet.noneOf(ManufacturingFacility.Type.class);
+	types.addAll(economy.getFacilities().keySet());
+	for (ManufacturingFacility.Type type : types) {
+	  ManufacturingFacility facility = economy.getFacility(type);
+	  if (facility instanceof Factory) {
+		writer.write("factory " + ((Factory) facility).getFactoryType().name() + "\n");
+	  } else {
+		writer.write("store " + type.name() + " " + facility.getSlots().size() + "\n");
+	  }
+	  for (Slot slot : facility.getSlots()) {
+		if (slot.hasItem()) writer.write("slot " + type.name() + " " + slot.getItem().name() + "\n");
+	  }
+	}
+	writer.write("end\n");
+  }
+
+  public static WorkloadCorpus read(Path file) throws IOException {
+	List<City> cities = new ArrayList<>();
+	List<ProductionRunner> economies = new ArrayList<>();
+	City city = null;
+	ProductionRunner economy = null;
+	int lineNumber = 0;
+	try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+	  for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+		lineNumber++;
+		line = line.trim();
+		if (line.isEmpty() || line.startsWith("#")) continue;
+		String[] fields = line.split("\\s+");
+		try {
+		  if (fields[0].equals("city")) {
+			Position limits = Position.of(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]));
+			Position entrance = fields.length > 3 ? Position.of(Integer.parseInt(fields[3]), Integer.parseInt(fields[4])) : null;
+			city = new City(limits, entrance);
+		  } else if (fields[0].equals("economy")) {
+			economy = new ProductionRunner();
+		  } else if (fields[0].equals("end")) {
+			if (city != null) cities.add(city);
+			if (economy != null) economies.add(economy);
+			city = null;
+			economy = null;
+		  } else if (city != null) {
+			city.add(ElementFactory.getElement(ElementType.valueOf(fields[0]),
+				city.getPosition(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]))));
+		  } else if (economy != null && fields[0].equals("unlock")) {
+			economy.unlockItem(Item.valueOf(fields[1]));
+		  } else if (economy != null && fields[0].equals("factory")) {
+			economy.addFacility(new Factory(FactoryType.valueOf(fields[1])));
+		  } else if (economy != null && fields[0].equals("store")) {
+			economy.addFacility(new Store(ManufacturingFacility.Type.valueOf(fields[1]), Integer.parseInt(fields[2])));
+		  } else if (economy != null && fields[0].equals("slot")) {
+			economy.getFacility(ManufacturingFacility.Type.valueOf(fields[1])).makeItems(Item.valueOf(fields[2]));
+		  } else {
+			throw new IllegalArgumentException("Unexpected line");
+		  }
+		} catch (RuntimeException e) {
+		  throw new IOException("Invalid line " + lineNumber + " of " + file + ": " + line, e);
+		}
+	  }
+	}
+	if (city != null || economy != null) throw new IOException("Missing end at the end of " + file);
+	return new WorkloadCorpus(cities, economies);
+  }
+
+  // Writes a generated corpus to the given file, with the given seed or 42.
+  public static void main(String[] args) throws IOException {
+	if (args.length < 1) throw new IllegalArgumentException("Usage: WorkloadCorpus <file> [seed]");
+	long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+	generate(seed).write(Paths.get(args[0]), "Generated by WorkloadCorpus with seed " + seed);
+  }
+}
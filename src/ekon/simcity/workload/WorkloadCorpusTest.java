@@ -0,0 +1,76 @@
+package ekon.simcity.workload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import ekon.simcity.city.City;
+import ekon.simcity.city.ElementType;
+import ekon.simcity.city.Item;
+import ekon.simcity.city.ManufacturingFacility;
+import ekon.simcity.city.Position;
+import ekon.simcity.city.ProductionRunner;
+
+public class WorkloadCorpusTest {
+
+  /** Verify that the same seed generates the same city, with its roads connected to the entrance. */
+  @Test
+  public void testGenerateCity() {
+	City city = new CityGenerator(7).generate(Position.of(30, 40), 0.8);
+	assertEquals(city.getZobristHash(), new CityGenerator(7).generate(Position.of(30, 40), 0.8).getZobristHash());
+	assertEquals(0, city.getNumDisconnectedRoads());
+	assertTrue(city.getNumElements(ElementType.FIRE_STATION) > 0);
+	assertTrue(city.getNumElements(ElementType.HOUSE) > 0);
+	// One park per HOUSES_PER_PARK houses, up to the houses placed after the last park.
+	int numHouses = city.getNumElements(ElementType.HOUSE);
+	assertEquals(numHouses / CityGenerator.HOUSES_PER_PARK, city.getNumElements(ElementType.PARK));
+  }
+
+  /** Verify that every unlocked item comes with its ingredients and a facility to make it in. */
+  @Test
+  public void testGenerateEconomy() {
+	ProductionRunner economy = new EconomyGenerator(7).generate(10, 2, 4, 0.5);
+	assertTrue(economy.getUnlockedItems().size() >= 10);
+	for (Item item : economy.getUnlockedItems().values()) {
+	  assertTrue(economy.hasFacility(item.getManufacturingFacilityType()));
+	  for (Item ingredient : item.getRequiredIngredients().keySet()) {
+		assertTrue(economy.getUnlockedItems().containsValue(ingredient));
+	  }
+	}
+	for (ManufacturingFacility facility : economy.getFacilities().values()) {
+	  assertTrue(facility.getSlots().size() >= 2);
+	}
+  }
+
+  /** Verify that a corpus reads back as it was written. */
+  @Test
+  public void testWriteAndRead() throws IOException {
+	WorkloadCorpus corpus = new WorkloadCorpus(
+		Arrays.asList(new CityGenerator(3).generate(Position.of(20, 20), 0.6), new City(Position.of(5, 6))),
+		Arrays.asList(new EconomyGenerator(3).generate(Item.values().length, 3, 3, 0.5)));
+	Path file = Files.createTempFile("workload", ".corpus");
+	Path rewrittenFile = Files.createTempFile("workload", ".corpus");
+	try {
+	  corpus.write(file, "test");
+	  WorkloadCorpus read = WorkloadCorpus.read(file);
+	  assertEquals(2, read.getCities().size());
+	  assertEquals(corpus.getCities().get(0).getZobristHash(), read.getCities().get(0).getZobristHash());
+	  assertEquals(corpus.getCities().get(0).getEntrance(), read.getCities().get(0).getEntrance());
+	  assertEquals(null, read.getCities().get(1).getEntrance());
+	  assertEquals(1, read.getEconomies().size());
+	  assertEquals(Item.values().length, read.getEconomies().get(0).getUnlockedItems().size());
+
+	  read.write(rewrittenFile, "test");
+	  assertEquals(Files.readAllLines(file), Files.readAllLines(rewrittenFile));
+	} finally {
+	  Files.delete(file);
+	  Files.delete(rewrittenFile);
+	}
+  }
+}